@@ -0,0 +1,127 @@
+package gitlet;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes the files of a commit to a tar or zip archive.
+ *
+ *  The format is chosen from the name of the output file: ".zip" gives a
+ *  compressed zip archive, ".tar.gz" or ".tgz" a gzip-compressed tar archive,
+ *  and ".tar" an uncompressed one. Blob contents are copied straight from the
+ *  store into the archive stream, so memory use does not depend on the size
+ *  of the files or the number of them.
+ */
+public class Archive {
+
+    /** Size of a tar header and of the blocks tar pads file contents to */
+    private static final int TAR_BLOCK = 512;
+
+    /** Longest file name a plain ustar header can hold */
+    private static final int TAR_NAME_LENGTH = 100;
+
+    /** Returns true if the name of output selects a format this class can write */
+    public static boolean isSupported(File output){
+        String name = output.getName();
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /** Writes the files of a commit made at time, given as file names mapped to the sha1s of their blobs
+     * in blobsFolder, to output in the format selected by its name. If writing fails, output is deleted. */
+    public static void write(SortedMap<String, String> files, File blobsFolder, long time, File output){
+        String name = output.getName();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output.toPath()))) {
+            if(name.endsWith(".zip")){
+                writeZip(files, blobsFolder, time, out);
+            }
+            else if(name.endsWith(".tar")){
+                writeTar(files, blobsFolder, time, out);
+            }
+            else{
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                writeTar(files, blobsFolder, time, gzip);
+                gzip.finish();
+            }
+        } catch (IOException excp) {
+            output.delete();
+            throw Utils.error("Cannot write archive: %s", excp.getMessage());
+        }
+    }
+
+    /** Writes files to out as a zip archive */
+    private static void writeZip(SortedMap<String, String> files, File blobsFolder, long time, OutputStream out)
+            throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for(Map.Entry<String, String> element : files.entrySet()){
+            ZipEntry entry = new ZipEntry(element.getKey());
+            entry.setTime(time);
+            zip.putNextEntry(entry);
+            Files.copy(Utils.join(blobsFolder, element.getValue()).toPath(), zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /** Writes files to out as a ustar archive */
+    private static void writeTar(SortedMap<String, String> files, File blobsFolder, long time, OutputStream out)
+            throws IOException {
+        for(Map.Entry<String, String> element : files.entrySet()){
+            File blob = Utils.join(blobsFolder, element.getValue());
+            long size = blob.length();
+            out.write(tarHeader(element.getKey(), size, time / 1000));
+            long copied = Files.copy(blob.toPath(), out);
+            if(copied != size){
+                throw new IOException("blob " + element.getValue() + " changed while it was archived");
+            }
+            int padding = (int) ((TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+            out.write(new byte[padding]);
+        }
+        out.write(new byte[2 * TAR_BLOCK]);
+    }
+
+    /** Returns the ustar header of a regular file with name fileName, size bytes long, modified at
+     * seconds since the Unix Epoch */
+    private static byte[] tarHeader(String fileName, long size, long seconds) throws IOException {
+        byte[] nameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+        if(nameBytes.length > TAR_NAME_LENGTH){
+            throw new IOException("file name too long for tar: " + fileName);
+        }
+        byte[] header = new byte[TAR_BLOCK];
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, seconds);
+        header[156] = '0';
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        for(int i = 148; i < 156; i++){
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for(byte b : header){
+            checksum += b & 0xff;
+        }
+        putOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /** Writes value into header[offset..offset+length) as a zero-padded, NUL-terminated octal numeral */
+    private static void putOctal(byte[] header, int offset, int length, long value) throws IOException {
+        String octal = Long.toOctalString(value);
+        if(octal.length() > length - 1){
+            throw new IOException("value too large for tar header: " + value);
+        }
+        octal = "0".repeat(length - 1 - octal.length()) + octal;
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+}
@@ -1,15 +1,23 @@
 package gitlet;
-import java.util.*;
-import java.text.*;
-import java.util.Date;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.TreeMap;
 
 /** Represents a gitlet commit object.
  *
  *  This class defines a commit by including relevant instance variables such as
- *  message, which stores the message of a commit, timestamp, which stores the time
- *  a commit was made, and blobs, a HashMap which stores the names and sha1 values
+ *  message, which stores the message of a commit, time, which stores when a commit
+ *  was made as milliseconds since the Unix Epoch, and blobs, a HashMap which stores the names and sha1 values
  *  of the files of the commit. Additionally, the class contains methods that define
  *  the behavior of a commit, such as getBlobs(), which returns the blobs of a commit.
  *
@@ -17,19 +25,36 @@ import java.util.HashMap;
  */
 public class Commit implements Serializable {
 
+    /** Pinned to the implicit value of the first Commit class, so that repositories made before
+     * commits stored their time as a long can still be read. */
+    private static final long serialVersionUID = -5542956690728516538L;
+
+    /** The format of the timestamps printed by log. DateTimeFormatter is immutable, so one instance is
+     * shared by every commit. */
+    public static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss yyyy Z", Locale.US).withZone(ZoneId.of("America/Los_Angeles"));
+
     /** The message of this Commit. */
     private String message;
-    private String timestamp;
+    /** The time this Commit was made, in milliseconds since the Unix Epoch. */
+    private long time;
     private String parentCommit;
 
     /** Stores the file names and sha1 values of the files that were committed with this commit.
      * Keys are file names and values are sha1s */
     private HashMap<String, String> blobs;
 
+    /** Lines describing the files this commit renamed or copied, printed by log after the message */
+    private ArrayList<String> renameSummary = new ArrayList<String>();
+
+    /** True if the id of this commit was computed by createCommitID. Commits saved by older versions have
+     * the sha1 of their serialized form as id, which cannot be recomputed once they are read back. */
+    private boolean canonicalID = true;
+
     /** Creates the initial commit with message "initial commit" and Unix Epoch Date (Thu Jan 1 00:00:00 1970) */
     public Commit(){
         this.message = "initial commit";
-        this.timestamp = createTimeStamp(new Date(0));
+        this.time = 0;
         blobs = new HashMap<String, String>();
         parentCommit = null;
     }
@@ -37,22 +62,39 @@ public class Commit implements Serializable {
     /** Creates a commit constructor with an inputted message and timestamp when created */
     public Commit(String message, String parentCommit, HashMap<String, String> blobs){
         this.message = message;
-        this.timestamp = createTimeStamp(new Date());
+        this.time = System.currentTimeMillis();
         this.blobs = blobs;
         this.parentCommit = parentCommit;
     }
 
-    /** Returns the timestamp of a commit in the proper format. */
-    public String createTimeStamp(Date date){
-        SimpleDateFormat s = new SimpleDateFormat("EEE MMM dd HH:mm:ss yyyy Z");
-        s.setTimeZone(TimeZone.getTimeZone("PST"));
-        String time = s.format(date);
-        return time;
+    /** Reads a commit, converting the formatted timestamp stored by older versions into a time and
+     * giving commits made before rename detection an empty rename summary. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.message = (String) fields.get("message", null);
+        this.parentCommit = (String) fields.get("parentCommit", null);
+        this.blobs = (HashMap<String, String>) fields.get("blobs", null);
+        if(fields.defaulted("time")){
+            this.time = ZonedDateTime.parse((String) fields.get("timestamp", null), TIMESTAMP_FORMAT)
+                    .toInstant().toEpochMilli();
+        }
+        else{
+            this.time = fields.get("time", 0L);
+        }
+        this.canonicalID = fields.get("canonicalID", false);
+        this.renameSummary = (ArrayList<String>) fields.get("renameSummary", null);
+        if(this.renameSummary == null){
+            this.renameSummary = new ArrayList<String>();
+        }
     }
 
-    /** Returns a SHA1 ID for this Commit */
+    /** Returns a SHA1 ID for this Commit, computed from its message, time, parent and blobs. The blobs are
+     * hashed in file name order, since a HashMap read back from disk may iterate in another order. */
     public String createCommitID() {
-        return Utils.sha1(Utils.serialize(this));
+        StringBuilder blobList = new StringBuilder();
+        new TreeMap<String, String>(this.blobs).forEach((k, v) -> blobList.append(k).append('\0').append(v).append('\n'));
+        return Utils.sha1("commit\0", this.message, "\0", Long.toString(this.time), "\0",
+                this.parentCommit == null ? "" : this.parentCommit, "\0", blobList.toString());
     }
 
     /** Returns the blob HashMap of this commit */
@@ -61,19 +103,39 @@ public class Commit implements Serializable {
     }
 
     /** Adds the HashMap of blobs sent in to a commit object's blob HashMap */
-    public void addBlobs(HashMap<String, String> added){
+    public void addBlobs(Map<String, String> added){
         added.forEach((k,v) -> this.blobs.put(k,v));
     }
 
     /** Removes all the key/value pairs of a commit object's blob Hashmap that correspond to the key/value pairs of the HashMap of blobs sent in */
-    public void removeBlobs(HashMap<String, String> removal){
+    public void removeBlobs(Map<String, String> removal){
         removal.forEach((k,v) -> this.blobs.remove(k, v));
     }
 
 
-    /** Returns Timestamp of Commit */
+    /** Returns the time this commit was made in milliseconds since the Unix Epoch */
+    public long getTime(){
+        return this.time;
+    }
+
+    /** Returns Timestamp of Commit, formatted for log */
     public String getTimeStamp(){
-        return this.timestamp;
+        return TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(this.time));
+    }
+
+    /** Returns the lines describing the files this commit renamed or copied */
+    public List<String> getRenameSummary(){
+        return this.renameSummary;
+    }
+
+    /** Sets the lines describing the files this commit renamed or copied */
+    public void setRenameSummary(List<String> renameSummary){
+        this.renameSummary = new ArrayList<String>(renameSummary);
+    }
+
+    /** Returns true if the id of this commit can be recomputed with createCommitID */
+    public boolean hasCanonicalID(){
+        return this.canonicalID;
     }
 
     /** Returns message of Commit */
@@ -0,0 +1,91 @@
+package gitlet;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Represents the set of working files a running watcher has seen change.
+ *
+ *  The watcher started by the watch command numbers every change it records
+ *  with an increasing generation. Readers remember the generation they last
+ *  looked at and only need to examine the files touched after it. If the
+ *  watcher lost events because its queue overflowed, or if it was restarted
+ *  in between, nothing can be concluded and readers have to scan the whole
+ *  working directory again.
+ */
+public class DirtySet implements Serializable {
+
+    /** Identifies the watcher process that recorded this set */
+    private String watcherId;
+
+    /** The generation of the latest recorded change */
+    private long generation;
+
+    /** The generation at which the watcher last lost events, or -1 if it never did */
+    private long overflowGeneration;
+
+    /** Maps the name of every touched file to the generation of its latest change */
+    private TreeMap<String, Long> touched;
+
+    /** The name of the latest sync cookie the watcher has seen */
+    private String acknowledgedCookie;
+
+    /** Creates an empty dirty set for the watcher identified by watcherId */
+    public DirtySet(String watcherId){
+        this.watcherId = watcherId;
+        this.generation = 0;
+        this.overflowGeneration = -1;
+        this.touched = new TreeMap<String, Long>();
+    }
+
+    /** Records a change to the file with name fileName */
+    public void touch(String fileName){
+        generation += 1;
+        touched.put(fileName, generation);
+    }
+
+    /** Records that the watcher lost events */
+    public void overflow(){
+        generation += 1;
+        overflowGeneration = generation;
+    }
+
+    /** Records that the watcher has seen the sync cookie with name cookie */
+    public void acknowledge(String cookie){
+        this.acknowledgedCookie = cookie;
+    }
+
+    /** Returns true if the watcher has seen the sync cookie with name cookie */
+    public boolean hasAcknowledged(String cookie){
+        return cookie.equals(this.acknowledgedCookie);
+    }
+
+    /** Returns true if a reader that last looked at generation gen of the watcher identified by
+     * watcherId can catch up by examining only the files touched since then. */
+    public boolean canCatchUp(String watcherId, long gen){
+        return this.watcherId.equals(watcherId) && overflowGeneration <= gen && gen <= generation;
+    }
+
+    /** Returns the names of the files touched after generation gen */
+    public Set<String> touchedSince(long gen){
+        Set<String> result = new TreeSet<String>();
+        for(Map.Entry<String, Long> element : touched.entrySet()){
+            if(element.getValue() > gen){
+                result.add(element.getKey());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the identifier of the watcher that recorded this set */
+    public String getWatcherId(){
+        return this.watcherId;
+    }
+
+    /** Returns the generation of the latest recorded change */
+    public long getGeneration(){
+        return this.generation;
+    }
+
+}
@@ -0,0 +1,127 @@
+package gitlet;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/** Represents an in-progress garbage collection of a repository.
+ *
+ *  This class gives every blob and commit of the repository an object index:
+ *  blobs come first in sorted order, followed by the commits in sorted order.
+ *  The mark phase sets the bit of every object reachable from the roots in a
+ *  BitSet keyed by that index, and the sweep phase then visits the objects in
+ *  index order so that it can be split over several runs. The state is saved
+ *  between runs together with a fingerprint of the roots, so a run that finds
+ *  the roots changed starts over with a fresh mark.
+ */
+public class GarbageCollector implements Serializable {
+
+    /** Sorted sha1s of the blobs that existed when the mark phase ran */
+    private ArrayList<String> blobs;
+
+    /** Sorted sha1s of the commits that existed when the mark phase ran */
+    private ArrayList<String> commits;
+
+    /** Bit i is set when the object with index i is reachable */
+    private BitSet reachable;
+
+    /** Index of the next object the sweep phase will visit */
+    private int cursor;
+
+    /** Fingerprint of the roots the mark phase started from */
+    private String fingerprint;
+
+    /** Creates a collection over the given blobs and commits, identified by the fingerprint of its roots */
+    public GarbageCollector(Collection<String> blobs, Collection<String> commits, String fingerprint){
+        this.blobs = new ArrayList<String>(blobs);
+        this.commits = new ArrayList<String>(commits);
+        Collections.sort(this.blobs);
+        Collections.sort(this.commits);
+        this.reachable = new BitSet(this.blobs.size() + this.commits.size());
+        this.cursor = 0;
+        this.fingerprint = fingerprint;
+    }
+
+    /** Marks every commit reachable from rootCommits through parent links, together with its blobs,
+     * and the blobs in rootBlobs. */
+    public void mark(HashMap<String, Commit> commitTree, Collection<String> rootCommits, Collection<String> rootBlobs){
+        for(String blob : rootBlobs){
+            markBlob(blob);
+        }
+        for(String commitID : rootCommits){
+            while(commitID != null){
+                int index = indexOfCommit(commitID);
+                if(index < 0 || reachable.get(index)){
+                    break;
+                }
+                reachable.set(index);
+                Commit commit = commitTree.get(commitID);
+                for(String blob : commit.getBlobs().values()){
+                    markBlob(blob);
+                }
+                commitID = commit.getParentSHA1();
+            }
+        }
+    }
+
+    /** Sets the bit of the blob with the given sha1, if it is known */
+    private void markBlob(String sha1){
+        int index = Collections.binarySearch(blobs, sha1);
+        if(index >= 0){
+            reachable.set(index);
+        }
+    }
+
+    /** Returns the object index of the commit with the given sha1, or a negative number if it is unknown */
+    private int indexOfCommit(String sha1){
+        int index = Collections.binarySearch(commits, sha1);
+        return index < 0 ? index : blobs.size() + index;
+    }
+
+    /** Returns the unreachable blobs among the next limit objects of the sweep and advances past them */
+    public List<String> sweepBlobs(int limit){
+        List<String> garbage = new ArrayList<String>();
+        int end = cursor + (int) Math.min(limit, blobs.size() - cursor);
+        for(; cursor < end; cursor++){
+            if(!reachable.get(cursor)){
+                garbage.add(blobs.get(cursor));
+            }
+        }
+        return garbage;
+    }
+
+    /** Returns the unreachable commits among the next limit objects of the sweep and advances past them.
+     * Commits are only visited once all blobs have been swept. */
+    public List<String> sweepCommits(int limit){
+        List<String> garbage = new ArrayList<String>();
+        if(cursor < blobs.size()){
+            return garbage;
+        }
+        int end = cursor + (int) Math.min(limit, size() - cursor);
+        for(; cursor < end; cursor++){
+            if(!reachable.get(cursor)){
+                garbage.add(commits.get(cursor - blobs.size()));
+            }
+        }
+        return garbage;
+    }
+
+    /** Returns the number of objects the sweep phase has not visited yet */
+    public int remaining(){
+        return size() - cursor;
+    }
+
+    /** Returns the number of objects covered by this collection */
+    public int size(){
+        return blobs.size() + commits.size();
+    }
+
+    /** Returns the fingerprint of the roots the mark phase started from */
+    public String getFingerprint(){
+        return this.fingerprint;
+    }
+
+}
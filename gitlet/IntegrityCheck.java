@@ -0,0 +1,64 @@
+package gitlet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/** Represents one verification step of the fsck command.
+ *
+ *  This class applies a check to every name in a list of objects and collects
+ *  the problems it reports. The list is split in halves until the pieces are
+ *  at most THRESHOLD objects long, so that the work is spread over all cores of
+ *  the common fork/join pool. The problems are returned in the order of the
+ *  names they belong to, no matter which thread found them.
+ */
+public class IntegrityCheck extends RecursiveTask<List<String>> {
+
+    /** Largest number of objects one task checks without splitting */
+    private static final int THRESHOLD = 16;
+
+    /** Names of the objects to check */
+    private List<String> names;
+
+    /** Returns the problems of the object with the given name, or an empty list if it is intact */
+    private Function<String, List<String>> check;
+
+    /** Index of the first name this task checks */
+    private int lo;
+
+    /** Index after the last name this task checks */
+    private int hi;
+
+    /** Creates a task that applies check to names[lo..hi) */
+    private IntegrityCheck(List<String> names, Function<String, List<String>> check, int lo, int hi){
+        this.names = names;
+        this.check = check;
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /** Applies check to every name in names on the common fork/join pool and returns all problems found */
+    public static List<String> run(List<String> names, Function<String, List<String>> check){
+        return ForkJoinPool.commonPool().invoke(new IntegrityCheck(names, check, 0, names.size()));
+    }
+
+    @Override
+    protected List<String> compute(){
+        if(hi - lo <= THRESHOLD){
+            List<String> problems = new ArrayList<String>();
+            for(int i = lo; i < hi; i++){
+                problems.addAll(check.apply(names.get(i)));
+            }
+            return problems;
+        }
+        int mid = (lo + hi) / 2;
+        IntegrityCheck left = new IntegrityCheck(names, check, lo, mid);
+        left.fork();
+        List<String> problems = new IntegrityCheck(names, check, mid, hi).compute();
+        List<String> leftProblems = left.join();
+        leftProblems.addAll(problems);
+        return leftProblems;
+    }
+
+}
@@ -0,0 +1,135 @@
+package gitlet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** Computes line-by-line differences between two versions of a file.
+ *
+ *  This class uses the linear-space variant of Myers' O((N+M)D) algorithm,
+ *  where D is the number of lines that were inserted or deleted. Each step
+ *  strips the lines the two ranges share at their start and end, then looks
+ *  for the middle snake of the shortest edit script by searching forwards
+ *  and backwards at once, and recurses on the ranges before and after it.
+ *  Only two vectors of O(N+M) ints are kept at a time, so even a complete
+ *  rewrite of a large file needs little memory, and small edits to large
+ *  files cost little more than a linear comparison.
+ */
+public class LineDiff {
+
+    /** Returns, for every line of after, the index of the line of before it was kept from, or -1 if
+     * the line was inserted. */
+    public static int[] matchLines(List<String> before, List<String> after){
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        int[] a = new int[before.size()];
+        int[] b = new int[after.size()];
+        for(int i = 0; i < a.length; i++){
+            a[i] = ids.computeIfAbsent(before.get(i), k -> ids.size());
+        }
+        for(int i = 0; i < b.length; i++){
+            b[i] = ids.computeIfAbsent(after.get(i), k -> ids.size());
+        }
+        int[] matches = new int[b.length];
+        Arrays.fill(matches, -1);
+        match(a, 0, a.length, b, 0, b.length, matches);
+        return matches;
+    }
+
+    /** Records in matches the lines of b[bLo..bHi) kept from a[aLo..aHi) */
+    private static void match(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, int[] matches){
+        while(aLo < aHi && bLo < bHi && a[aLo] == b[bLo]){
+            matches[bLo++] = aLo++;
+        }
+        while(aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]){
+            matches[--bHi] = --aHi;
+        }
+        if(aLo == aHi || bLo == bHi){
+            return;
+        }
+        int[] split = middleSnake(a, aLo, aHi, b, bLo, bHi);
+        if(split != null){
+            match(a, aLo, aLo + split[0], b, bLo, bLo + split[1], matches);
+            match(a, aLo + split[0], aHi, b, bLo + split[1], bHi, matches);
+        }
+    }
+
+    /** Returns the offsets {x, y} into a[aLo..aHi) and b[bLo..bHi) where the forward and backward searches
+     * for the shortest edit script meet, or null if the two ranges have no line in common. The ranges must
+     * differ in their first and last lines. */
+    private static int[] middleSnake(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi){
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int[] forward = new int[2 * maxD + 2];
+        int[] backward = new int[2 * maxD + 2];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean odd = delta % 2 != 0;
+        int forwardStart = 0;
+        int forwardEnd = 0;
+        int backwardStart = 0;
+        int backwardEnd = 0;
+        for(int d = 0; d < maxD; d++){
+            for(int k = -d + forwardStart; k <= d - forwardEnd; k += 2){
+                int x;
+                if(k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])){
+                    x = forward[offset + k + 1];
+                }
+                else{
+                    x = forward[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while(x < n && y < m && a[aLo + x] == b[bLo + y]){
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                if(x > n){
+                    forwardEnd += 2;
+                }
+                else if(y > m){
+                    forwardStart += 2;
+                }
+                else if(odd){
+                    int other = offset + delta - k;
+                    if(other >= 0 && other < backward.length && backward[other] != -1 && x >= n - backward[other]){
+                        return new int[] {x, y};
+                    }
+                }
+            }
+            for(int k = -d + backwardStart; k <= d - backwardEnd; k += 2){
+                int x;
+                if(k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])){
+                    x = backward[offset + k + 1];
+                }
+                else{
+                    x = backward[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while(x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]){
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+                if(x > n){
+                    backwardEnd += 2;
+                }
+                else if(y > m){
+                    backwardStart += 2;
+                }
+                else if(!odd){
+                    int other = offset + delta - k;
+                    if(other >= 0 && other < forward.length && forward[other] != -1
+                            && forward[other] >= n - x){
+                        return new int[] {forward[other], forward[other] - (other - offset)};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+}
@@ -1,6 +1,10 @@
 package gitlet;
 import java.io.*;
 import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 
 /** Driver class for Gitlet, a subset of the Git version-control system
@@ -42,7 +46,8 @@ public class Main {
                 Repository.commit(args[1]);
                 break;
             case "log":
-                Repository.log();
+                long[] logRange = parseTimeRange(args);
+                Repository.log(logRange[0], logRange[1], Arrays.asList(args).contains("--summary"));
                 break;
             case "checkout":
                 if(args.length == 2){
@@ -60,7 +65,8 @@ public class Main {
                 }
                 break;
             case "global-log":
-                Repository.globalLog();
+                long[] globalLogRange = parseTimeRange(args);
+                Repository.globalLog(globalLogRange[0], globalLogRange[1], Arrays.asList(args).contains("--summary"));
                 break;
             case "find":
                 Repository.find(args[1]);
@@ -80,9 +86,112 @@ public class Main {
             case "reset":
                 Repository.reset(args[1]);
                 break;
+            case "gc":
+                boolean pruneNow = false;
+                int step = Integer.MAX_VALUE;
+                for(int i = 1; i < args.length; i++){
+                    if(args[i].equals("--now")){
+                        pruneNow = true;
+                    }
+                    else if(args[i].equals("--step") && i + 1 < args.length && args[i + 1].matches("[1-9][0-9]*")){
+                        step = Integer.parseInt(args[++i]);
+                    }
+                    else{
+                        System.out.print("Incorrect operands.");
+                        System.exit(0);
+                    }
+                }
+                Repository.collectGarbage(pruneNow, step);
+                break;
+            case "watch":
+                Repository.watch();
+                break;
+            case "fsck":
+                Repository.fsck();
+                break;
+            case "stash":
+                if(args.length == 1){
+                    Repository.stash();
+                }
+                else if(args.length == 2 && args[1].equals("pop")){
+                    Repository.popStash();
+                }
+                else if(args.length == 2 && args[1].equals("list")){
+                    Repository.listStash();
+                }
+                else{
+                    System.out.print("Incorrect operands.");
+                    System.exit(0);
+                }
+                break;
+            case "annotate":
+                Repository.annotate(args[1]);
+                break;
+            case "archive":
+                if(args.length != 3){
+                    System.out.print("Incorrect operands.");
+                    System.exit(0);
+                }
+                Repository.archive(args[1], args[2]);
+                break;
+            case "sparse-checkout":
+                if(args.length >= 2 && args[1].equals("set")){
+                    Repository.setSparseCheckout(Arrays.asList(args).subList(2, args.length));
+                }
+                else if(args.length == 2 && args[1].equals("disable")){
+                    Repository.disableSparseCheckout();
+                }
+                else if(args.length == 2 && args[1].equals("list")){
+                    Repository.listSparseCheckout();
+                }
+                else{
+                    System.out.print("Incorrect operands.");
+                    System.exit(0);
+                }
+                break;
             default:
                 System.out.println("No command with that name exists.");
         }
     }
 
-}
\ No newline at end of file
+    /** Returns the time range selected by the --since and --until options among the operands of ARGS,
+     *  as milliseconds since the Unix Epoch. The only other operand allowed is --summary. Dates are either yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss, in the
+     *  time zone of log. A plain date in --until includes that whole day.
+     */
+    private static long[] parseTimeRange(String[] args) {
+        long[] range = {Long.MIN_VALUE, Long.MAX_VALUE};
+        for (int i = 1; i < args.length; i++) {
+            if (i + 1 < args.length && args[i].equals("--since")) {
+                range[0] = parseTime(args[++i], false);
+            } else if (i + 1 < args.length && args[i].equals("--until")) {
+                range[1] = parseTime(args[++i], true);
+            } else if (!args[i].equals("--summary")) {
+                System.out.print("Incorrect operands.");
+                System.exit(0);
+            }
+        }
+        return range;
+    }
+
+    /** Returns the time denoted by DATE in milliseconds since the Unix Epoch. If DATE has no time of day,
+     *  returns the start of that day, or its last millisecond if ENDOFDAY is set.
+     */
+    private static long parseTime(String date, boolean endOfDay) {
+        ZoneId zone = Commit.TIMESTAMP_FORMAT.getZone();
+        try {
+            if (date.contains("T")) {
+                return LocalDateTime.parse(date).atZone(zone).toInstant().toEpochMilli();
+            }
+            LocalDate day = LocalDate.parse(date);
+            if (endOfDay) {
+                return day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+            }
+            return day.atStartOfDay(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException excp) {
+            System.out.print("Incorrect operands.");
+            System.exit(0);
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package gitlet;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Represents the store of branch heads of a repository.
+ *
+ *  Branches live in a single packed file with one "<sha1> <name>" line per
+ *  branch, sorted by name, so that a branch can be found by binary search over
+ *  the file without reading all of it. Recent writes go to loose files in the
+ *  branches folder instead, one serialized sha1 String per branch, which
+ *  override the packed entry of the same name. An empty String marks a packed
+ *  branch as deleted. Once there are more than LOOSE_LIMIT loose files they are
+ *  folded into a new packed file, which replaces the old one in a single step.
+ */
+public class PackedRefs {
+
+    /** Number of loose branch files allowed before they are folded into the packed file */
+    private static final int LOOSE_LIMIT = 64;
+
+    /** The sorted file holding the packed branches */
+    private File packedFile;
+
+    /** The folder holding the loose branch files */
+    private File looseFolder;
+
+    /** Creates a branch store backed by packedFile and the loose files in looseFolder */
+    public PackedRefs(File packedFile, File looseFolder){
+        this.packedFile = packedFile;
+        this.looseFolder = looseFolder;
+    }
+
+    /** Returns the sha1 of the commit at the head of the branch with name branchName, or null if there
+     * is no such branch. */
+    public String get(String branchName){
+        File looseFile = Utils.join(looseFolder, branchName);
+        if(looseFile.exists()){
+            String sha1 = Utils.readObject(looseFile, String.class);
+            return sha1.isEmpty() ? null : sha1;
+        }
+        return findPacked(branchName);
+    }
+
+    /** Returns true if a branch with name branchName exists */
+    public boolean contains(String branchName){
+        return get(branchName) != null;
+    }
+
+    /** Points the branch with name branchName at the commit with the given sha1, creating it if needed */
+    public void put(String branchName, String sha1){
+        Utils.writeObject(Utils.join(looseFolder, branchName), sha1);
+        if(looseFolder.list().length > LOOSE_LIMIT){
+            pack();
+        }
+    }
+
+    /** Deletes the branch with name branchName */
+    public void remove(String branchName){
+        if(findPacked(branchName) != null){
+            put(branchName, "");
+        }
+        else{
+            Utils.join(looseFolder, branchName).delete();
+        }
+    }
+
+    /** Returns every branch name mapped to the sha1 of the commit at its head, sorted by name */
+    public TreeMap<String, String> list(){
+        TreeMap<String, String> branches = readPacked();
+        for(String branchName : Utils.plainFilenamesIn(looseFolder)){
+            String sha1 = Utils.readObject(Utils.join(looseFolder, branchName), String.class);
+            if(sha1.isEmpty()){
+                branches.remove(branchName);
+            }
+            else{
+                branches.put(branchName, sha1);
+            }
+        }
+        return branches;
+    }
+
+    /** Folds every loose branch file into the packed file and deletes the loose files */
+    public void pack(){
+        List<String> looseFiles = Utils.plainFilenamesIn(looseFolder);
+        StringBuilder contents = new StringBuilder();
+        for(Map.Entry<String, String> element : list().entrySet()){
+            contents.append(element.getValue()).append(' ').append(element.getKey()).append('\n');
+        }
+        packedFile.getParentFile().mkdir();
+        File temporary = new File(packedFile.getPath() + ".tmp");
+        Utils.writeContents(temporary, contents.toString());
+        try {
+            Files.move(temporary.toPath(), packedFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot pack branches: %s", excp.getMessage());
+        }
+        for(String branchName : looseFiles){
+            Utils.join(looseFolder, branchName).delete();
+        }
+    }
+
+    /** Returns every branch of the packed file mapped to its sha1 */
+    private TreeMap<String, String> readPacked(){
+        TreeMap<String, String> branches = new TreeMap<String, String>();
+        if(!packedFile.exists()){
+            return branches;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(packedFile.toPath(), StandardCharsets.UTF_8)) {
+            for(String line = reader.readLine(); line != null; line = reader.readLine()){
+                branches.put(line.substring(Utils.UID_LENGTH + 1), line.substring(0, Utils.UID_LENGTH));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read packed branches: %s", excp.getMessage());
+        }
+        return branches;
+    }
+
+    /** Returns the sha1 of the packed branch with name branchName, or null if it is not packed.
+     * Binary searches the byte range that must contain its line, then scans what is left of it. */
+    private String findPacked(String branchName){
+        if(!packedFile.exists()){
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(packedFile, "r")) {
+            long lo = 0;
+            long hi = file.length();
+            while(lo < hi){
+                long mid = (lo + hi) / 2;
+                file.seek(mid);
+                if(mid > lo){
+                    file.readLine();
+                }
+                long start = file.getFilePointer();
+                if(start >= hi){
+                    break;
+                }
+                String line = decode(file.readLine());
+                int cmp = line.substring(Utils.UID_LENGTH + 1).compareTo(branchName);
+                if(cmp == 0){
+                    return line.substring(0, Utils.UID_LENGTH);
+                }
+                else if(cmp < 0){
+                    lo = file.getFilePointer();
+                }
+                else{
+                    hi = start;
+                }
+            }
+            file.seek(lo);
+            while(file.getFilePointer() < hi){
+                String line = decode(file.readLine());
+                if(line.substring(Utils.UID_LENGTH + 1).equals(branchName)){
+                    return line.substring(0, Utils.UID_LENGTH);
+                }
+            }
+            return null;
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read packed branches: %s", excp.getMessage());
+        }
+    }
+
+    /** Returns the UTF-8 text of a line read by RandomAccessFile.readLine, which maps each byte to one char */
+    private static String decode(String line){
+        return new String(line.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    }
+
+}
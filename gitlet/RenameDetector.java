@@ -0,0 +1,215 @@
+package gitlet;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Finds renamed and copied files between two versions of a tree.
+ *
+ *  Each tree is given as file names mapped to blob sha1s. A file that only
+ *  exists in the newer tree is first matched against the removed files with
+ *  the same blob, and then against the unchanged files with the same blob,
+ *  which makes it a copy. The remaining added and removed files are compared
+ *  through MinHash sketches of the sets of lines in their blobs. Sketches are
+ *  bucketed by bands of SKETCH_ROWS values, so only pairs sharing at least one
+ *  band are compared, instead of every added file against every removed one.
+ *  Pairs at least MIN_SIMILARITY percent alike are then paired greedily, most
+ *  similar first. Sketches are cached per blob, since blobs never change.
+ */
+public class RenameDetector {
+
+    /** Number of hash values in a sketch */
+    private static final int SKETCH_SIZE = 64;
+
+    /** Number of sketch values in one band */
+    private static final int SKETCH_ROWS = 2;
+
+    /** Smallest similarity, in percent, for a pair of files to count as a rename */
+    private static final int MIN_SIMILARITY = 50;
+
+    /** The folder caching the sketch of each blob */
+    private File sketchFolder;
+
+    /** The folder holding the blobs */
+    private File blobsFolder;
+
+    /** Creates a detector reading blobs from blobsFolder and caching their sketches in sketchFolder */
+    public RenameDetector(File sketchFolder, File blobsFolder){
+        this.sketchFolder = sketchFolder;
+        this.blobsFolder = blobsFolder;
+    }
+
+    /** A file of the newer tree that was renamed or copied from a file of the older tree */
+    public static class Rename {
+
+        /** Name of the file in the older tree */
+        private String source;
+
+        /** Name of the file in the newer tree */
+        private String target;
+
+        /** How alike the two versions are, in percent */
+        private int similarity;
+
+        /** True if the source file still exists in the newer tree */
+        private boolean copy;
+
+        /** Creates a rename, or a copy if copy is set, from source to target */
+        Rename(String source, String target, int similarity, boolean copy){
+            this.source = source;
+            this.target = target;
+            this.similarity = similarity;
+            this.copy = copy;
+        }
+
+        /** Returns the name of the file in the older tree */
+        public String getSource(){
+            return this.source;
+        }
+
+        /** Returns the name of the file in the newer tree */
+        public String getTarget(){
+            return this.target;
+        }
+
+        /** Returns how alike the two versions are, in percent */
+        public int getSimilarity(){
+            return this.similarity;
+        }
+
+        /** Returns true if the source file still exists in the newer tree */
+        public boolean isCopy(){
+            return this.copy;
+        }
+    }
+
+    /** Returns the renames and copies from the tree before to the tree after, sorted by target name */
+    public List<Rename> detect(Map<String, String> before, Map<String, String> after){
+        TreeMap<String, String> removed = new TreeMap<String, String>();
+        TreeMap<String, String> added = new TreeMap<String, String>();
+        HashMap<String, String> unchangedByBlob = new HashMap<String, String>();
+        for(Map.Entry<String, String> element : before.entrySet()){
+            if(!after.containsKey(element.getKey())){
+                removed.put(element.getKey(), element.getValue());
+            }
+            else if(after.get(element.getKey()).equals(element.getValue())){
+                unchangedByBlob.putIfAbsent(element.getValue(), element.getKey());
+            }
+        }
+        for(Map.Entry<String, String> element : after.entrySet()){
+            if(!before.containsKey(element.getKey())){
+                added.put(element.getKey(), element.getValue());
+            }
+        }
+
+        TreeMap<String, Rename> renames = new TreeMap<String, Rename>();
+        HashMap<String, List<String>> removedByBlob = new HashMap<String, List<String>>();
+        removed.forEach((name, sha1) -> removedByBlob.computeIfAbsent(sha1, k -> new ArrayList<String>()).add(name));
+        HashSet<String> usedSources = new HashSet<String>();
+        for(Map.Entry<String, String> element : added.entrySet()){
+            List<String> sources = removedByBlob.get(element.getValue());
+            if(sources != null && !sources.isEmpty()){
+                String source = sources.remove(0);
+                usedSources.add(source);
+                renames.put(element.getKey(), new Rename(source, element.getKey(), 100, false));
+            }
+            else if(unchangedByBlob.containsKey(element.getValue())){
+                renames.put(element.getKey(), new Rename(unchangedByBlob.get(element.getValue()), element.getKey(), 100, true));
+            }
+        }
+        removed.keySet().removeAll(usedSources);
+        added.keySet().removeAll(renames.keySet());
+        if(removed.isEmpty() || added.isEmpty()){
+            return new ArrayList<Rename>(renames.values());
+        }
+
+        HashMap<String, int[]> sketches = new HashMap<String, int[]>();
+        HashMap<Long, List<String>> buckets = new HashMap<Long, List<String>>();
+        for(Map.Entry<String, String> element : removed.entrySet()){
+            int[] sketch = sketch(element.getValue());
+            sketches.put(element.getKey(), sketch);
+            for(int band = 0; band < SKETCH_SIZE / SKETCH_ROWS; band++){
+                buckets.computeIfAbsent(bandKey(sketch, band), k -> new ArrayList<String>()).add(element.getKey());
+            }
+        }
+        List<Rename> candidates = new ArrayList<Rename>();
+        for(Map.Entry<String, String> element : added.entrySet()){
+            int[] sketch = sketch(element.getValue());
+            HashSet<String> compared = new HashSet<String>();
+            for(int band = 0; band < SKETCH_SIZE / SKETCH_ROWS; band++){
+                for(String source : buckets.getOrDefault(bandKey(sketch, band), List.of())){
+                    if(compared.add(source)){
+                        int similarity = similarity(sketches.get(source), sketch);
+                        if(similarity >= MIN_SIMILARITY){
+                            candidates.add(new Rename(source, element.getKey(), similarity, false));
+                        }
+                    }
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingInt(Rename::getSimilarity).reversed()
+                .thenComparing(Rename::getTarget).thenComparing(Rename::getSource));
+        for(Rename candidate : candidates){
+            if(!usedSources.contains(candidate.getSource()) && !renames.containsKey(candidate.getTarget())){
+                usedSources.add(candidate.getSource());
+                renames.put(candidate.getTarget(), candidate);
+            }
+        }
+        return new ArrayList<Rename>(renames.values());
+    }
+
+    /** Returns the MinHash sketch of the set of lines of the blob with the given sha1, reading it from the
+     * cache if possible. A value of Integer.MAX_VALUE means the blob has no lines. */
+    private int[] sketch(String sha1){
+        File cacheFile = Utils.join(sketchFolder, sha1);
+        if(cacheFile.exists()){
+            return Utils.readObject(cacheFile, int[].class);
+        }
+        int[] sketch = new int[SKETCH_SIZE];
+        Arrays.fill(sketch, Integer.MAX_VALUE);
+        Utils.readContentsAsString(Utils.join(blobsFolder, sha1)).lines().distinct().forEach(line -> {
+            int hash = line.hashCode();
+            for(int i = 0; i < SKETCH_SIZE; i++){
+                sketch[i] = Math.min(sketch[i], mix(hash, i));
+            }
+        });
+        sketchFolder.mkdir();
+        Utils.writeObject(cacheFile, sketch);
+        return sketch;
+    }
+
+    /** Returns the i-th independent hash of hash, as a non-negative int */
+    private static int mix(int hash, int i){
+        long x = (hash & 0xffffffffL) ^ (0x9e3779b97f4a7c15L * (i + 1));
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        x = x ^ (x >>> 31);
+        return (int) (x >>> 33);
+    }
+
+    /** Returns a key identifying the values of the given band of sketch */
+    private static long bandKey(int[] sketch, int band){
+        long key = band;
+        for(int i = band * SKETCH_ROWS; i < (band + 1) * SKETCH_ROWS; i++){
+            key = key * 0x100000001b3L + sketch[i];
+        }
+        return key;
+    }
+
+    /** Returns the estimated similarity of the line sets behind two sketches, in percent */
+    private static int similarity(int[] a, int[] b){
+        int equal = 0;
+        for(int i = 0; i < SKETCH_SIZE; i++){
+            if(a[i] == b[i] && a[i] != Integer.MAX_VALUE){
+                equal++;
+            }
+        }
+        return equal * 100 / SKETCH_SIZE;
+    }
+
+}
@@ -5,6 +5,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.*;
 import java.text.*;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 //import static gitlet.Utils.*;
 
@@ -32,10 +41,26 @@ public class Repository implements Serializable {
     private static File stagingAreaFolder = Utils.join(GITLET_DIR, "Staging Area");
     private static File blobsFolder = Utils.join(GITLET_DIR, "Blobs");
     private static File commitFolder = Utils.join(GITLET_DIR, "Commit");
+    private static TimeIndex timeIndex = new TimeIndex(Utils.join(commitFolder, "Time Index"));
     private static Commit initialCommit = new Commit();
     private static String master;  //The head master pointers should point to this initial commit
     private static File headFolder = Utils.join(GITLET_DIR, "Head");
     private static File branchesFolder = Utils.join(GITLET_DIR, "Branches");
+    private static File packedRefsFolder = Utils.join(GITLET_DIR, "Packed Refs");
+    private static PackedRefs branches = new PackedRefs(Utils.join(packedRefsFolder, "Refs"), branchesFolder);
+    private static File sparseCheckoutFolder = Utils.join(GITLET_DIR, "Sparse Checkout");
+    private static File garbageCollectionFolder = Utils.join(GITLET_DIR, "Garbage Collection");
+    private static File watchFolder = Utils.join(GITLET_DIR, "Watch");
+    private static File stashFolder = Utils.join(GITLET_DIR, "Stash");
+    private static File annotateCacheFolder = Utils.join(GITLET_DIR, "Annotate Cache");
+    private static File sketchesFolder = Utils.join(GITLET_DIR, "Sketches");
+    private static RenameDetector renameDetector = new RenameDetector(sketchesFolder, blobsFolder);
+    /** How long a command waits for a running watcher to catch up before scanning the whole CWD, in milliseconds */
+    private static final long WATCH_SYNC_TIMEOUT = 1000;
+    /** How long unreachable objects are kept before gc removes them, in milliseconds (two weeks) */
+    private static final long GC_GRACE_PERIOD = 14L * 24 * 60 * 60 * 1000;
+    /** Number of threads that read blobs and write files when a whole commit is checked out */
+    private static final int CHECKOUT_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
 
     /** Initializes a repository and all the objects needed within it. */
     public static void initialize() {
@@ -49,16 +74,22 @@ public class Repository implements Serializable {
         blobsFolder.mkdir();
         headFolder.mkdir();
         branchesFolder.mkdir();
+        packedRefsFolder.mkdir();
+        sparseCheckoutFolder.mkdir();
+        garbageCollectionFolder.mkdir();
+        stashFolder.mkdir();
+        annotateCacheFolder.mkdir();
 
         stage = new StagingArea();
         master = sha1(initialCommit);
         commitTree = new HashMap<String, Commit>();
         commitTree.put(sha1(initialCommit), initialCommit);
 
-        save(stagingAreaFolder, "Staging Area", stage);
+        stage.save(stagingAreaFolder);
         save(commitFolder,"Commit Tree", commitTree);
-        save(branchesFolder, "master", master);
-        save(headFolder, "Head", "master");
+        timeIndex.add(master, initialCommit.getTime());
+        branches.put("master", master);
+        writeHead("master", master);
     }
 
     /** Stores the serializable obj in the destination directory under the name fileName.
@@ -74,34 +105,44 @@ public class Repository implements Serializable {
             System.out.println("File does not exist.");
             System.exit(0);
         }
-        byte[] fileContents = Utils.readContents(addedFile);
-        String addedFilesha1 = Utils.sha1(fileContents);
+        String addedFilesha1 = workingFileSHA1(fileName);
+        byte[] addedContents = null;
+        if(!Utils.join(blobsFolder, addedFilesha1).exists()){
+            // The file may have changed since it was hashed, so the blob is named after the bytes it stores
+            addedContents = Utils.readContents(addedFile);
+            addedFilesha1 = Utils.sha1(addedContents);
+        }
 
-        StagingArea stage = Utils.readObject(Utils.join(stagingAreaFolder, "Staging Area"), StagingArea.class);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
         Commit currentCommit = commitTree.get(currentBranch);
 
-        if(!currentCommit.getBlobs().containsKey(fileName) || !currentCommit.getBlobs().containsValue(addedFilesha1) && !stage.stageContainsSHA1(addedFilesha1, true)){
-            stage.stageToAddition(fileName, addedFilesha1);
-            Utils.writeContents(Utils.join(blobsFolder, addedFilesha1), fileContents);
-        }
-        else if(currentCommit.getBlobs().containsKey(fileName) && currentCommit.getBlobs().containsValue(addedFilesha1)  && stage.stageContainsSHA1(addedFilesha1, true)){
-            stage.removeFromStage(fileName, true);
+        if(addedFilesha1.equals(currentCommit.getBlobs().get(fileName))){
+            if(stage.getAdditionStage().containsKey(fileName) || stage.getRemovalStage().containsKey(fileName)){
+                stage.removeFromStage(fileName, true);
+            }
         }
-        else if(currentCommit.getBlobs().containsValue(addedFilesha1)  && stage.stageContainsSHA1(addedFilesha1, false)){
+        else if(!addedFilesha1.equals(stage.getAdditionStage().get(fileName))){
+            File blob = Utils.join(blobsFolder, addedFilesha1);
+            if(addedContents != null && !blob.exists()){
+                Utils.writeContents(blob, addedContents);
+            }
             stage.removeFromStage(fileName, false);
+            stage.stageToAddition(fileName, addedFilesha1);
         }
-        save(stagingAreaFolder, "Staging Area", stage);
+        stage.save(stagingAreaFolder);
     }
 
     /** Commit function for git commit -m message */
     public static void commit(String message){
-        StagingArea stage = Utils.readObject(Utils.join(stagingAreaFolder, "Staging Area"), StagingArea.class);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class); //currentBranch stores the sha1 of the current commit
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1]; //currentBranch stores the sha1 of the current commit
 
         if(stage.getAdditionStage().isEmpty() && stage.getRemovalStage().isEmpty()){
             System.out.print("No changes added to the commit.");
@@ -112,53 +153,107 @@ public class Repository implements Serializable {
         newCommit.addBlobs(parentCommit.getBlobs());
         newCommit.addBlobs(stage.getAdditionStage());
         newCommit.removeBlobs(stage.getRemovalStage());
+        ArrayList<String> renameSummary = new ArrayList<String>();
+        for(RenameDetector.Rename rename : renameDetector.detect(parentCommit.getBlobs(), newCommit.getBlobs())){
+            renameSummary.add((rename.isCopy() ? " copy " : " rename ") + rename.getSource() + " => "
+                    + rename.getTarget() + ", " + rename.getSimilarity() + "% similar");
+        }
+        newCommit.setRenameSummary(renameSummary);
         currentBranch = sha1(newCommit);
         commitTree.put(sha1(newCommit), newCommit);
         stage.erase();
-        save(stagingAreaFolder, "Staging Area", stage);
+        stage.save(stagingAreaFolder);
         save(commitFolder, "Commit Tree", commitTree);
-        save(branchesFolder, currentBranchName, currentBranch);
-        save(headFolder, "Head", currentBranchName);
+        branches.put(currentBranchName, currentBranch);
+        writeHead(currentBranchName, currentBranch);
+        timeIndex.add(currentBranch, newCommit.getTime());
+    }
+
+    /** Returns the name of the current branch and the sha1 of the commit at its head, both read from Head.
+     * Older versions stored only the branch name in Head; such a Head is rewritten in the current form. */
+    private static String[] readHead(){
+        Serializable head = Utils.readObject(Utils.join(headFolder, "Head"), Serializable.class);
+        if(head instanceof String[]){
+            return (String[]) head;
+        }
+        String branchName = (String) head;
+        String commitID = branches.get(branchName);
+        writeHead(branchName, commitID);
+        Utils.join(headFolder, "Target").delete();
+        return new String[] {branchName, commitID};
+    }
+
+    /** Makes the branch with name branchName, whose head is the commit with id commitID, the current branch.
+     * Head is replaced in a single step, so the branch name and commit id are always read together. */
+    private static void writeHead(String branchName, String commitID){
+        File temporary = Utils.join(headFolder, "Head.tmp");
+        Utils.writeObject(temporary, new String[] {branchName, commitID});
+        try {
+            Files.move(temporary.toPath(), Utils.join(headFolder, "Head").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot save the head: %s", excp.getMessage());
+        }
     }
 
     /** Returns the sha1 String of the commit object sent in */
     public static String sha1(Commit commit){
-        return Utils.sha1(Utils.serialize(commit));
+        return commit.createCommitID();
     }
 
-    /** Returns the output of git log */
-    public static void log(){
+    /** Returns the output of git log, limited to the commits made between since and until (inclusive).
+     * The walk stops at the first commit older than since. If showSummary is set, each commit is followed
+     * by the files it renamed or copied. */
+    public static void log(long since, long until, boolean showSummary){
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
 
-        Commit currentCommit = commitTree.get(currentBranch);
-        while(currentCommit.getParentSHA1() != null){
-            printCommitLog(currentCommit);
-            currentCommit = commitTree.get(currentCommit.getParentSHA1());
+        String commitID = currentBranch;
+        Commit currentCommit = commitTree.get(commitID);
+        while(currentCommit != null && currentCommit.getTime() >= since){
+            if(currentCommit.getTime() <= until){
+                printCommitLog(commitID, currentCommit, showSummary);
+            }
+            commitID = currentCommit.getParentSHA1();
+            currentCommit = commitID == null ? null : commitTree.get(commitID);
         }
-        printCommitLog(currentCommit);
     }
-    /** Returns the output of globalLog() */
-    public static void globalLog(){
+    /** Returns the output of globalLog(), newest commit first, limited to the commits made between since
+     * and until (inclusive). The range is looked up in the time index instead of scanning every commit.
+     * If showSummary is set, each commit is followed by the files it renamed or copied. */
+    public static void globalLog(long since, long until, boolean showSummary){
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        commitTree.forEach((k,v) -> printCommitLog(v));
+        if(timeIndex.size() != commitTree.size()){
+            timeIndex.rebuild(commitTree);
+        }
+        for(String commitID : timeIndex.range(since, until)){
+            printCommitLog(commitID, commitTree.get(commitID), showSummary);
+        }
     }
 
-    /** Prints and formats an individual commit as it should be in log */
-    public static void printCommitLog(Commit commit){
+    /** Prints and formats the commit with id commitID as it should be in log, followed by its rename
+     * summary if showSummary is set */
+    public static void printCommitLog(String commitID, Commit commit, boolean showSummary){
         System.out.println("===");
-        System.out.println("commit " + sha1(commit));
+        System.out.println("commit " + commitID);
         System.out.println("Date: " + commit.getTimeStamp());
         System.out.println(commit.getMessage());
+        if(showSummary){
+            for(String line : commit.getRenameSummary()){
+                System.out.println(line);
+            }
+        }
         System.out.println();
     }
     /** Checkout function for case 1, where the file with name filename is being checked out
      * from the current commit.  */
     public static void checkout(String filename){
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
         Commit currentCommit = commitTree.get(currentBranch);
 
         if(!currentCommit.getBlobs().containsKey(filename)){
@@ -205,12 +300,13 @@ public class Repository implements Serializable {
      * givenBranchName, are being checked out */
     public static void checkoutBranch(String givenBranchName){
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
         Commit currentCommit = commitTree.get(currentBranch);
-        StagingArea stage = Utils.readObject(Utils.join(stagingAreaFolder, "Staging Area"), StagingArea.class);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
 
-        if(!Utils.join(branchesFolder, givenBranchName).exists()){
+        if(!branches.contains(givenBranchName)){
             System.out.print("No such branch exists.");
             System.exit(0);
         }
@@ -219,12 +315,14 @@ public class Repository implements Serializable {
             System.exit(0);
         }
 
-        String givenBranch = Utils.readObject(Utils.join(branchesFolder, givenBranchName), String.class);
+        String givenBranch = branches.get(givenBranchName);
         Commit givenBranchCommit = commitTree.get(givenBranch);
         List<String> filesInCWD = Utils.plainFilenamesIn(CWD);
+        SparseCheckout sparse = readSparseCheckout();
 
         for(int i = 0; i < filesInCWD.size(); i++){
-            if(!currentCommit.getBlobs().containsKey(filesInCWD.get(i)) && givenBranchCommit.getBlobs().containsKey(filesInCWD.get(i))){
+            if(!currentCommit.getBlobs().containsKey(filesInCWD.get(i)) && givenBranchCommit.getBlobs().containsKey(filesInCWD.get(i))
+                    && sparse.includes(filesInCWD.get(i))){
                 System.out.print("There is an untracked file in the way; delete it, or add and commit it first.");
                 System.exit(0);
             }
@@ -234,28 +332,20 @@ public class Repository implements Serializable {
                 Utils.restrictedDelete(filesInCWD.get(i));
             }
         }
-        for(Map.Entry<String, String> element : givenBranchCommit.getBlobs().entrySet()){
-            String sha1 = element.getValue();
-            String filename = element.getKey();
-            if(Utils.join(CWD, filename).exists()){
-                Utils.restrictedDelete(filename);
-            }
-            String contents = Utils.readContentsAsString(Utils.join(blobsFolder,sha1));
-            Utils.writeContents(Utils.join(CWD, filename), contents);
-        }
+        checkoutCommitFiles(givenBranchCommit, sparse);
 
         stage.erase();
-        save(headFolder, "Head", givenBranchName);
-        save(stagingAreaFolder, "Staging Area", stage);
+        writeHead(givenBranchName, givenBranch);
+        stage.save(stagingAreaFolder);
     }
 
     /**Function for find command */
     public static void find(String commitMessage){
         boolean noCommitExists = true;
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        for(Commit commit : commitTree.values()){
-            if(commit.getMessage().equals(commitMessage)){
-                System.out.println(sha1(commit)); //might fail because second new line
+        for(Map.Entry<String, Commit> element : commitTree.entrySet()){
+            if(element.getValue().getMessage().equals(commitMessage)){
+                System.out.println(element.getKey()); //might fail because second new line
                 noCommitExists = false;
             }
         }
@@ -267,10 +357,11 @@ public class Repository implements Serializable {
     /** Returns the output of git remove <filename> (essentially removes a file from a commit) */
     public static void remove(String filename){
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
         Commit currentCommit = commitTree.get(currentBranch);
-        StagingArea stage = Utils.readObject(Utils.join(stagingAreaFolder, "Staging Area"), StagingArea.class);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
 
         if(!stage.getAdditionStage().containsKey(filename) && !currentCommit.getBlobs().containsKey(filename)){
             System.out.print("No reason to remove the file.");
@@ -286,35 +377,77 @@ public class Repository implements Serializable {
                 Utils.restrictedDelete(filename);
             }
         }
-        save(stagingAreaFolder, "Staging Area", stage);
+        stage.save(stagingAreaFolder);
     }
 
 
-    /** Creates a new branch in the branchesFolder */
+    /** Creates a new branch pointing at the current commit */
     public static void branch(String branchName){
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
 
-        if(Utils.join(branchesFolder, branchName).exists()){
+        if(branches.contains(branchName)){
             System.out.print("A branch with that name already exists.");
             System.exit(0);
         }
-        save(branchesFolder, branchName, currentBranch);
+        branches.put(branchName, currentBranch);
     }
 
     /** Returns output of git status */
     public static void status(){
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        StagingArea stage = Utils.readObject(Utils.join(stagingAreaFolder, "Staging Area"), StagingArea.class);
-        List<String> branches = Utils.plainFilenamesIn(branchesFolder);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
         Object[] additionStageFiles = stage.getAdditionStage().keySet().toArray();
-        Arrays.sort(additionStageFiles);
         Object[] removalStageFiles = stage.getRemovalStage().keySet().toArray();
-        Arrays.sort(removalStageFiles);
+
+        HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        String currentBranch = head[1];
+        HashMap<String, String> trackedFiles = commitTree.get(currentBranch).getBlobs();
+        TreeMap<String, String> workingFiles = scanWorkingTree().getFiles();
+        SparseCheckout sparse = readSparseCheckout();
+        TreeMap<String, String> modifications = new TreeMap<String, String>();
+        for(Map.Entry<String, String> element : stage.getAdditionStage().entrySet()){
+            String workingSHA1 = workingFiles.get(element.getKey());
+            if(workingSHA1 == null){
+                modifications.put(element.getKey(), "deleted");
+            }
+            else if(!workingSHA1.equals(element.getValue())){
+                modifications.put(element.getKey(), "modified");
+            }
+        }
+        for(Map.Entry<String, String> element : trackedFiles.entrySet()){
+            String filename = element.getKey();
+            if(stage.getAdditionStage().containsKey(filename) || stage.getRemovalStage().containsKey(filename)){
+                continue;
+            }
+            String workingSHA1 = workingFiles.get(filename);
+            if(workingSHA1 == null && sparse.includes(filename)){
+                modifications.put(filename, "deleted");
+            }
+            else if(workingSHA1 != null && !workingSHA1.equals(element.getValue())){
+                modifications.put(filename, "modified");
+            }
+        }
+        HashMap<String, String> stagedBlobs = new HashMap<String, String>(trackedFiles);
+        stagedBlobs.putAll(stage.getAdditionStage());
+        stage.getRemovalStage().forEach((k, v) -> stagedBlobs.remove(k));
+        HashMap<String, RenameDetector.Rename> renames = new HashMap<String, RenameDetector.Rename>();
+        for(RenameDetector.Rename rename : renameDetector.detect(trackedFiles, stagedBlobs)){
+            renames.put(rename.getTarget(), rename);
+        }
+        List<String> untrackedFiles = new ArrayList<String>();
+        for(String filename : workingFiles.keySet()){
+            if(!stage.getAdditionStage().containsKey(filename)
+                    && (!trackedFiles.containsKey(filename) || stage.getRemovalStage().containsKey(filename))){
+                untrackedFiles.add(filename);
+            }
+        }
 
         //Printing
         System.out.println("=== Branches ===");
-        for(String b : branches){
+        for(String b : branches.list().keySet()){
             if(currentBranchName.equals(b)){
                 System.out.println("*" + currentBranchName);
             }
@@ -326,7 +459,13 @@ public class Repository implements Serializable {
 
         System.out.println("=== Staged Files ===");
         for(Object s : additionStageFiles){
-            System.out.println(s);
+            RenameDetector.Rename rename = renames.get(s);
+            if(rename == null){
+                System.out.println(s);
+            }
+            else{
+                System.out.println(s + " (" + (rename.isCopy() ? "copied" : "renamed") + " from " + rename.getSource() + ")");
+            }
         }
         System.out.println();
 
@@ -337,16 +476,22 @@ public class Repository implements Serializable {
         System.out.println();
 
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for(Map.Entry<String, String> element : modifications.entrySet()){
+            System.out.println(element.getKey() + " (" + element.getValue() + ")");
+        }
         System.out.println();
 
         System.out.println("=== Untracked Files ===");
+        for(String s : untrackedFiles){
+            System.out.println(s);
+        }
         System.out.println();
     }
 
     /** Removes branch as in git rm-branch */
     public static void removeBranch(String branchName) {
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        if(!Utils.join(branchesFolder, branchName).exists()){
+        String currentBranchName = readHead()[0];
+        if(!branches.contains(branchName)){
             System.out.print(" A branch with that name does not exist.");
             System.exit(0);
         }
@@ -354,16 +499,17 @@ public class Repository implements Serializable {
             System.out.print("Cannot remove the current branch.");
             System.exit(0);
         }
-        Utils.join(branchesFolder, branchName).delete();
+        branches.remove(branchName);
     }
 
     /** Function for reset command */
     public static void reset(String commitID){
         HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
-        String currentBranchName = Utils.readObject(Utils.join(headFolder, "Head"), String.class);
-        String currentBranch = Utils.readObject(Utils.join(branchesFolder, currentBranchName), String.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
         Commit currentCommit = commitTree.get(currentBranch);
-        StagingArea stage = Utils.readObject(Utils.join(stagingAreaFolder, "Staging Area"), StagingArea.class);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
         List<String> filesInCWD = Utils.plainFilenamesIn(CWD);
         if(commitID.length() < 40) {
             int commitIDlength = commitID.length();
@@ -378,8 +524,10 @@ public class Repository implements Serializable {
             System.exit(0);
         }
         Commit givenCommit = commitTree.get(commitID);
+        SparseCheckout sparse = readSparseCheckout();
         for(int i = 0; i < filesInCWD.size(); i++){
-            if(!currentCommit.getBlobs().containsKey(filesInCWD.get(i)) && givenCommit.getBlobs().containsKey(filesInCWD.get(i))){
+            if(!currentCommit.getBlobs().containsKey(filesInCWD.get(i)) && givenCommit.getBlobs().containsKey(filesInCWD.get(i))
+                    && sparse.includes(filesInCWD.get(i))){
                 System.out.println("There is an untracked file in the way; delete it, or add and commit it first.");
                 System.exit(0);
             }
@@ -387,12 +535,746 @@ public class Repository implements Serializable {
                 Utils.restrictedDelete(filesInCWD.get(i));
             }
         }
-        for(String name : givenCommit.getBlobs().keySet()){
-            checkout(commitID, name);
-        }
-        currentBranch = sha1(givenCommit);
+        checkoutCommitFiles(givenCommit, sparse);
+        currentBranch = commitID;
         stage.erase();
-        save(stagingAreaFolder, "Staging Area", stage);
-        save(branchesFolder, currentBranchName, currentBranch);
+        stage.save(stagingAreaFolder);
+        branches.put(currentBranchName, currentBranch);
+        writeHead(currentBranchName, currentBranch);
+    }
+
+    /** Writes every file of commit that is selected by the sparse checkout patterns into the CWD,
+     * overwriting the versions that are there. Files outside the patterns are never read or written.
+     * Blobs are read and written by a pool of CHECKOUT_THREADS threads, so the next blobs are already
+     * being read while earlier files are written. If any file fails, the failure of the file that comes
+     * first by name is rethrown once every file has been processed. */
+    private static void checkoutCommitFiles(Commit commit, SparseCheckout sparse){
+        TreeMap<String, String> selected = new TreeMap<String, String>();
+        for(Map.Entry<String, String> element : commit.getBlobs().entrySet()){
+            if(sparse.includes(element.getKey())){
+                selected.put(element.getKey(), element.getValue());
+            }
+        }
+        if(selected.size() <= 1){
+            selected.forEach((filename, sha1) -> checkoutFile(filename, sha1));
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(CHECKOUT_THREADS, selected.size()));
+        List<Future<?>> writes = new ArrayList<Future<?>>();
+        selected.forEach((filename, sha1) -> writes.add(pool.submit(() -> checkoutFile(filename, sha1))));
+        pool.shutdown();
+        RuntimeException failure = null;
+        for(Future<?> write : writes){
+            try {
+                write.get();
+            } catch (ExecutionException excp) {
+                if(failure == null){
+                    failure = excp.getCause() instanceof RuntimeException
+                            ? (RuntimeException) excp.getCause() : new IllegalArgumentException(excp.getCause());
+                }
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        if(failure != null){
+            throw failure;
+        }
+    }
+
+    /** Overwrites the file with name filename in the CWD with the contents of the blob sha1 */
+    private static void checkoutFile(String filename, String sha1){
+        if(Utils.join(CWD, filename).exists()){
+            Utils.restrictedDelete(Utils.join(CWD, filename));
+        }
+        byte[] contents = Utils.readContents(Utils.join(blobsFolder, sha1));
+        Utils.writeContents(Utils.join(CWD, filename), contents);
+    }
+
+    /** Returns the sparse checkout patterns of the repository. Repositories without any patterns
+     * check out every file. */
+    private static SparseCheckout readSparseCheckout(){
+        File patternsFile = Utils.join(sparseCheckoutFolder, "Patterns");
+        if(!patternsFile.exists()){
+            return new SparseCheckout();
+        }
+        return Utils.readObject(patternsFile, SparseCheckout.class);
+    }
+
+    /** Function for sparse-checkout set, which restricts the working directory to the files matching
+     * patterns. Patterns starting with "!" exclude the files they match. */
+    public static void setSparseCheckout(List<String> patterns){
+        if(patterns.isEmpty()){
+            System.out.print("Please enter at least one pattern.");
+            System.exit(0);
+        }
+        SparseCheckout sparse = new SparseCheckout(patterns);
+        sparseCheckoutFolder.mkdir();
+        save(sparseCheckoutFolder, "Patterns", sparse);
+        applySparseCheckout(sparse);
+    }
+
+    /** Function for sparse-checkout disable, which materializes every tracked file again */
+    public static void disableSparseCheckout(){
+        SparseCheckout sparse = new SparseCheckout();
+        Utils.join(sparseCheckoutFolder, "Patterns").delete();
+        applySparseCheckout(sparse);
+    }
+
+    /** Function for sparse-checkout list, which prints the patterns in the order they apply */
+    public static void listSparseCheckout(){
+        for(String pattern : readSparseCheckout().getPatterns()){
+            System.out.println(pattern);
+        }
+    }
+
+    /** Brings the CWD in line with the sparse checkout patterns for the current commit. Tracked files
+     * that became selected are written unless they are staged for removal, and tracked files that are
+     * no longer selected are deleted as long as they have no unsaved modifications. */
+    private static void applySparseCheckout(SparseCheckout sparse){
+        HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
+        Commit currentCommit = commitTree.get(currentBranch);
+
+        for(Map.Entry<String, String> element : currentCommit.getBlobs().entrySet()){
+            String filename = element.getKey();
+            File workingFile = Utils.join(CWD, filename);
+            if(sparse.includes(filename) && !workingFile.exists() && !stage.getRemovalStage().containsKey(filename)){
+                Utils.writeContents(workingFile, Utils.readContents(Utils.join(blobsFolder, element.getValue())));
+            }
+            else if(!sparse.includes(filename) && workingFile.exists()
+                    && Utils.sha1(Utils.readContents(workingFile)).equals(element.getValue())){
+                Utils.restrictedDelete(filename);
+            }
+        }
+    }
+
+    /** Function for gc command. Removes the blobs and commits that cannot be reached from any branch
+     * head, the staging area or the stash and are older than the grace period, or of any age if pruneNow is set.
+     * At most step objects are swept per call; the progress is saved so that the next call continues
+     * where this one stopped, as long as no branch head, the staging area or the stash changed in between.
+     * The annotate caches of removed commits are deleted with them. */
+    public static void collectGarbage(boolean pruneNow, int step){
+        HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
+        long cutoff = pruneNow ? System.currentTimeMillis() : System.currentTimeMillis() - GC_GRACE_PERIOD;
+
+        ArrayList<String> rootCommits = new ArrayList<String>(branches.list().values());
+        ArrayList<StashEntry> stash = readStash();
+        String fingerprint = Utils.sha1(Utils.serialize(rootCommits), Utils.serialize(stage), Utils.serialize(stash),
+                Boolean.toString(pruneNow));
+        for(Map.Entry<String, Commit> element : commitTree.entrySet()){
+            if(element.getValue().getTime() > cutoff){
+                rootCommits.add(element.getKey());
+            }
+        }
+        ArrayList<String> rootBlobs = new ArrayList<String>(stage.getAdditionStage().values());
+        rootBlobs.addAll(stage.getRemovalStage().values());
+        for(StashEntry entry : stash){
+            rootCommits.add(entry.getCommit().getParentSHA1());
+            rootBlobs.addAll(entry.getCommit().getBlobs().values());
+            rootBlobs.addAll(entry.getStage().getAdditionStage().values());
+        }
+
+        garbageCollectionFolder.mkdir();
+        File stateFile = Utils.join(garbageCollectionFolder, "State");
+        GarbageCollector collector = null;
+        if(stateFile.exists()){
+            collector = Utils.readObject(stateFile, GarbageCollector.class);
+            if(!collector.getFingerprint().equals(fingerprint)){
+                collector = null;
+            }
+        }
+        if(collector == null){
+            collector = new GarbageCollector(Utils.plainFilenamesIn(blobsFolder), commitTree.keySet(), fingerprint);
+            collector.mark(commitTree, rootCommits, rootBlobs);
+        }
+
+        int remainingBefore = collector.remaining();
+        for(String blob : collector.sweepBlobs(step)){
+            File blobFile = Utils.join(blobsFolder, blob);
+            if(blobFile.lastModified() <= cutoff){
+                blobFile.delete();
+                Utils.join(sketchesFolder, blob).delete();
+            }
+        }
+        List<String> garbageCommits = collector.sweepCommits(step - (remainingBefore - collector.remaining()));
+        if(!garbageCommits.isEmpty()){
+            for(String commitID : garbageCommits){
+                commitTree.remove(commitID);
+                deleteAnnotateCache(commitID);
+            }
+            save(commitFolder, "Commit Tree", commitTree);
+            timeIndex.rebuild(commitTree);
+        }
+
+        if(collector.remaining() > 0){
+            save(garbageCollectionFolder, "State", collector);
+            System.out.println(collector.remaining() + " objects left to check.");
+        }
+        else{
+            stateFile.delete();
+            String[] caches = annotateCacheFolder.list();
+            if(caches != null){
+                for(String name : caches){
+                    if(!commitTree.containsKey(name)){
+                        deleteAnnotateCache(name);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Function for watch command. Runs until it is killed, recording the name of every file in the CWD
+     * that is created, modified or deleted in the dirty set so that status and add can examine only
+     * those files. Only one watcher can run on a repository at a time. */
+    public static void watch(){
+        watchFolder.mkdir();
+        try (FileChannel lockChannel = FileChannel.open(Utils.join(watchFolder, "Lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            FileLock lock = lockChannel.tryLock();
+            if(lock == null){
+                System.out.print("A watcher is already running.");
+                System.exit(0);
+            }
+            WatchKey cwdKey = CWD.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchFolder.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            DirtySet dirty = new DirtySet(UUID.randomUUID().toString());
+            saveDirtySet(dirty);
+            while(true){
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                if(key == cwdKey){
+                    changed = recordWatchEvents(cwdKey, dirty);
+                }
+                else{
+                    for(WatchEvent<?> event : key.pollEvents()){
+                        if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                            dirty.overflow();
+                            changed = true;
+                            continue;
+                        }
+                        String name = event.context().toString();
+                        if(name.startsWith("Cookie ")){
+                            // Changes made before the cookie was created may still be queued on cwdKey
+                            recordWatchEvents(cwdKey, dirty);
+                            dirty.acknowledge(name);
+                            changed = true;
+                        }
+                    }
+                }
+                if(changed){
+                    saveDirtySet(dirty);
+                }
+                if(!key.reset()){
+                    break;
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot watch the working directory: %s", excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Records in dirty the names of the CWD files in the pending events of cwdKey, and returns true if
+     * there were any */
+    private static boolean recordWatchEvents(WatchKey cwdKey, DirtySet dirty){
+        boolean changed = false;
+        for(WatchEvent<?> event : cwdKey.pollEvents()){
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                dirty.overflow();
+                changed = true;
+                continue;
+            }
+            String name = event.context().toString();
+            if(!name.equals(".gitlet")){
+                dirty.touch(name);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /** Replaces the dirty set with dirty in a single step, so that readers never see a partial write */
+    private static void saveDirtySet(DirtySet dirty){
+        File temporary = Utils.join(watchFolder, "Dirty Set.tmp");
+        Utils.writeObject(temporary, dirty);
+        try {
+            Files.move(temporary.toPath(), Utils.join(watchFolder, "Dirty Set").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot save the dirty set: %s", excp.getMessage());
+        }
+    }
+
+    /** Returns the dirty set once the running watcher has recorded every change made before this call,
+     * or null if no watcher is running or it does not catch up within WATCH_SYNC_TIMEOUT. The watcher
+     * proves it has caught up by acknowledging a cookie file created in the watch folder, which it only
+     * does after recording every event already queued for the CWD. */
+    private static DirtySet syncWatcher(){
+        File lockFile = Utils.join(watchFolder, "Lock");
+        File dirtySetFile = Utils.join(watchFolder, "Dirty Set");
+        if(!lockFile.exists() || !dirtySetFile.exists()){
+            return null;
+        }
+        try (FileChannel lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.tryLock();
+            if(lock != null){
+                lock.release();
+                return null;
+            }
+        } catch (IOException excp) {
+            return null;
+        }
+        String cookie = "Cookie " + System.nanoTime();
+        File cookieFile = Utils.join(watchFolder, cookie);
+        Utils.writeContents(cookieFile, "");
+        try {
+            long deadline = System.currentTimeMillis() + WATCH_SYNC_TIMEOUT;
+            while(System.currentTimeMillis() < deadline){
+                DirtySet dirty = Utils.readObject(dirtySetFile, DirtySet.class);
+                if(dirty.hasAcknowledged(cookie)){
+                    return dirty;
+                }
+                Thread.sleep(1);
+            }
+            return null;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            cookieFile.delete();
+        }
+    }
+
+    /** Returns a snapshot of the contents of every plain file in the CWD. If a watcher is running and
+     * the previous snapshot is still usable, only the files it reports as touched are hashed again;
+     * otherwise every file is read and hashed. */
+    private static WorkingTreeSnapshot scanWorkingTree(){
+        DirtySet dirty = syncWatcher();
+        File snapshotFile = Utils.join(watchFolder, "Working Tree");
+        WorkingTreeSnapshot snapshot = null;
+        if(dirty != null && snapshotFile.exists()){
+            snapshot = Utils.readObject(snapshotFile, WorkingTreeSnapshot.class);
+            if(!dirty.canCatchUp(snapshot.getWatcherId(), snapshot.getGeneration())){
+                snapshot = null;
+            }
+        }
+        if(snapshot == null){
+            snapshot = new WorkingTreeSnapshot();
+            for(String filename : Utils.plainFilenamesIn(CWD)){
+                snapshot.update(filename, Utils.sha1(Utils.readContents(Utils.join(CWD, filename))));
+            }
+        }
+        else{
+            for(String filename : dirty.touchedSince(snapshot.getGeneration())){
+                File workingFile = Utils.join(CWD, filename);
+                if(workingFile.isFile()){
+                    snapshot.update(filename, Utils.sha1(Utils.readContents(workingFile)));
+                }
+                else{
+                    snapshot.remove(filename);
+                }
+            }
+        }
+        if(dirty != null){
+            snapshot.synchronize(dirty.getWatcherId(), dirty.getGeneration());
+            save(watchFolder, "Working Tree", snapshot);
+        }
+        return snapshot;
+    }
+
+    /** Returns the sha1 of the contents of the file with name fileName in the CWD. The file is only read
+     * if a running watcher cannot vouch that it is unchanged since the last working tree snapshot. */
+    private static String workingFileSHA1(String fileName){
+        DirtySet dirty = syncWatcher();
+        File snapshotFile = Utils.join(watchFolder, "Working Tree");
+        if(dirty != null && snapshotFile.exists()){
+            WorkingTreeSnapshot snapshot = Utils.readObject(snapshotFile, WorkingTreeSnapshot.class);
+            if(dirty.canCatchUp(snapshot.getWatcherId(), snapshot.getGeneration())
+                    && !dirty.touchedSince(snapshot.getGeneration()).contains(fileName)
+                    && snapshot.getFiles().containsKey(fileName)){
+                return snapshot.getFiles().get(fileName);
+            }
+        }
+        return Utils.sha1(Utils.readContents(Utils.join(CWD, fileName)));
+    }
+
+    /** Function for fsck command. Verifies that every blob's contents hash to its name, that every commit
+     * hashes to its ID and only refers to parents and blobs that exist, and that every branch head and
+     * staged or stashed file refers to an existing object. Also reports the dangling commits that no branch
+     * or stash entry reaches and the dangling blobs that neither a reachable commit, the staging area nor
+     * the stash refers to. Blobs and
+     * commits are verified in parallel. Prints one line per problem, or nothing if the store is intact. */
+    public static void fsck(){
+        HashMap<String, Commit> commitTree;
+        try {
+            commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        } catch (IllegalArgumentException excp) {
+            System.out.println("corrupt commit tree: " + excp.getMessage());
+            return;
+        }
+        List<String> blobs = Utils.plainFilenamesIn(blobsFolder);
+        HashSet<String> blobSet = new HashSet<String>(blobs);
+
+        List<String> problems = new ArrayList<String>();
+        problems.addAll(IntegrityCheck.run(blobs, blob -> {
+            try {
+                if(!Utils.sha1Contents(Utils.join(blobsFolder, blob)).equals(blob)){
+                    return List.of("corrupt blob " + blob);
+                }
+                return List.of();
+            } catch (IllegalArgumentException excp) {
+                return List.of("unreadable blob " + blob);
+            }
+        }));
+        problems.addAll(IntegrityCheck.run(new ArrayList<String>(new TreeSet<String>(commitTree.keySet())), commitID -> {
+            List<String> commitProblems = new ArrayList<String>();
+            Commit commit = commitTree.get(commitID);
+            if(commit.hasCanonicalID() && !sha1(commit).equals(commitID)){
+                commitProblems.add("corrupt commit " + commitID);
+            }
+            if(commit.getParentSHA1() != null && !commitTree.containsKey(commit.getParentSHA1())){
+                commitProblems.add("missing commit " + commit.getParentSHA1() + " (parent of " + commitID + ")");
+            }
+            for(Map.Entry<String, String> element : new TreeMap<String, String>(commit.getBlobs()).entrySet()){
+                if(!blobSet.contains(element.getValue())){
+                    commitProblems.add("missing blob " + element.getValue() + " (" + element.getKey() + " in " + commitID + ")");
+                }
+            }
+            return commitProblems;
+        }));
+
+        TreeMap<String, String> branchHeads = branches.list();
+        String currentBranchName = readHead()[0];
+        if(!branchHeads.containsKey(currentBranchName)){
+            problems.add("missing branch " + currentBranchName + " (HEAD)");
+        }
+        HashSet<String> reachableCommits = new HashSet<String>();
+        HashSet<String> reachableBlobs = new HashSet<String>();
+        for(Map.Entry<String, String> element : branchHeads.entrySet()){
+            String commitID = element.getValue();
+            if(!commitTree.containsKey(commitID)){
+                problems.add("missing commit " + commitID + " (head of " + element.getKey() + ")");
+            }
+            while(commitID != null && commitTree.containsKey(commitID) && reachableCommits.add(commitID)){
+                reachableBlobs.addAll(commitTree.get(commitID).getBlobs().values());
+                commitID = commitTree.get(commitID).getParentSHA1();
+            }
+        }
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
+        TreeMap<String, String> stagedBlobs = new TreeMap<String, String>(stage.getAdditionStage());
+        stagedBlobs.putAll(stage.getRemovalStage());
+        for(Map.Entry<String, String> element : stagedBlobs.entrySet()){
+            if(!blobSet.contains(element.getValue())){
+                problems.add("missing blob " + element.getValue() + " (" + element.getKey() + " in staging area)");
+            }
+        }
+        reachableBlobs.addAll(stagedBlobs.values());
+        ArrayList<StashEntry> stash = readStash();
+        for(int i = stash.size() - 1; i >= 0; i--){
+            String entryName = "stash@{" + (stash.size() - 1 - i) + "}";
+            Commit stashCommit = stash.get(i).getCommit();
+            TreeMap<String, String> stashBlobs = new TreeMap<String, String>(stashCommit.getBlobs());
+            stashBlobs.putAll(stash.get(i).getStage().getAdditionStage());
+            for(Map.Entry<String, String> element : stashBlobs.entrySet()){
+                if(!blobSet.contains(element.getValue())){
+                    problems.add("missing blob " + element.getValue() + " (" + element.getKey() + " in " + entryName + ")");
+                }
+            }
+            reachableBlobs.addAll(stashBlobs.values());
+            String commitID = stashCommit.getParentSHA1();
+            if(!commitTree.containsKey(commitID)){
+                problems.add("missing commit " + commitID + " (parent of " + entryName + ")");
+            }
+            while(commitID != null && commitTree.containsKey(commitID) && reachableCommits.add(commitID)){
+                reachableBlobs.addAll(commitTree.get(commitID).getBlobs().values());
+                commitID = commitTree.get(commitID).getParentSHA1();
+            }
+        }
+
+        for(String commitID : new TreeSet<String>(commitTree.keySet())){
+            if(!reachableCommits.contains(commitID)){
+                problems.add("dangling commit " + commitID);
+            }
+        }
+        for(String blob : blobs){
+            if(!reachableBlobs.contains(blob)){
+                problems.add("dangling blob " + blob);
+            }
+        }
+        for(String problem : problems){
+            System.out.println(problem);
+        }
+    }
+
+    /** Returns the entries of the stash, oldest first */
+    private static ArrayList<StashEntry> readStash(){
+        File stashFile = Utils.join(stashFolder, "Stash");
+        if(!stashFile.exists()){
+            return new ArrayList<StashEntry>();
+        }
+        return Utils.readObject(stashFile, ArrayList.class);
+    }
+
+    /** Function for stash command. Saves the staging area and the tracked and staged files of the CWD as a
+     * new stash entry, then resets the CWD and the staging area to the current commit. Only the contents of
+     * modified files are written as new blobs; blobs already in the store are not rewritten. Untracked
+     * files are left alone. */
+    public static void stash(){
+        HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        String[] head = readHead();
+        String currentBranchName = head[0];
+        String currentBranch = head[1];
+        Commit currentCommit = commitTree.get(currentBranch);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
+        SparseCheckout sparse = readSparseCheckout();
+
+        HashMap<String, String> workingBlobs = new HashMap<String, String>(currentCommit.getBlobs());
+        workingBlobs.putAll(stage.getAdditionStage());
+        stage.getRemovalStage().forEach((k, v) -> workingBlobs.remove(k));
+        for(String filename : new ArrayList<String>(workingBlobs.keySet())){
+            File workingFile = Utils.join(CWD, filename);
+            if(!workingFile.exists()){
+                if(sparse.includes(filename)){
+                    workingBlobs.remove(filename);
+                }
+                continue;
+            }
+            String workingSHA1 = Utils.sha1Contents(workingFile);
+            if(!workingSHA1.equals(workingBlobs.get(filename))){
+                File blobFile = Utils.join(blobsFolder, workingSHA1);
+                if(!blobFile.exists()){
+                    Utils.writeContents(blobFile, Utils.readContents(workingFile));
+                }
+                workingBlobs.put(filename, workingSHA1);
+            }
+        }
+        if(workingBlobs.equals(currentCommit.getBlobs()) && stage.getAdditionStage().isEmpty()
+                && stage.getRemovalStage().isEmpty()){
+            System.out.print("No local changes to save.");
+            System.exit(0);
+        }
+
+        Commit stashCommit = new Commit("WIP on " + currentBranchName + ": " + currentBranch.substring(0, 7)
+                + " " + currentCommit.getMessage(), currentBranch, workingBlobs);
+        ArrayList<StashEntry> stash = readStash();
+        stash.add(new StashEntry(stashCommit, stage, currentBranchName));
+        stashFolder.mkdir();
+        save(stashFolder, "Stash", stash);
+
+        TreeSet<String> filenames = new TreeSet<String>(workingBlobs.keySet());
+        filenames.addAll(currentCommit.getBlobs().keySet());
+        for(String filename : filenames){
+            String targetSHA1 = currentCommit.getBlobs().get(filename);
+            if(targetSHA1 == null){
+                if(Utils.join(CWD, filename).exists()){
+                    Utils.restrictedDelete(filename);
+                }
+            }
+            else if(sparse.includes(filename) && !targetSHA1.equals(workingBlobs.get(filename))){
+                checkoutFile(filename, targetSHA1);
+            }
+        }
+        new StagingArea().save(stagingAreaFolder);
+    }
+
+    /** Function for stash list command. Prints the stash entries, newest first */
+    public static void listStash(){
+        ArrayList<StashEntry> stash = readStash();
+        for(int i = stash.size() - 1; i >= 0; i--){
+            System.out.println("stash@{" + (stash.size() - 1 - i) + "}: " + stash.get(i).getCommit().getMessage());
+        }
+    }
+
+    /** Function for stash pop command. Applies the changes of the newest stash entry, relative to the commit
+     * it was made on, to the CWD, stages its staged files again and drops it from the stash. Refuses to
+     * run if a file it would write has changes that are not committed. */
+    public static void popStash(){
+        ArrayList<StashEntry> stash = readStash();
+        if(stash.isEmpty()){
+            System.out.print("No stash entries found.");
+            System.exit(0);
+        }
+        HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        Commit currentCommit = commitTree.get(readHead()[1]);
+        StagingArea stage = StagingArea.load(stagingAreaFolder);
+        StashEntry entry = stash.get(stash.size() - 1);
+        Commit baseCommit = commitTree.get(entry.getCommit().getParentSHA1());
+        if(baseCommit == null){
+            System.out.print("The commit this stash entry was made on no longer exists.");
+            System.exit(0);
+        }
+        HashMap<String, String> stashBlobs = entry.getCommit().getBlobs();
+        HashMap<String, String> baseBlobs = baseCommit.getBlobs();
+
+        TreeSet<String> changed = new TreeSet<String>();
+        TreeSet<String> filenames = new TreeSet<String>(stashBlobs.keySet());
+        filenames.addAll(baseBlobs.keySet());
+        for(String filename : filenames){
+            if(!Objects.equals(stashBlobs.get(filename), baseBlobs.get(filename))){
+                changed.add(filename);
+            }
+        }
+        for(String filename : changed){
+            File workingFile = Utils.join(CWD, filename);
+            if(stage.getAdditionStage().containsKey(filename) || stage.getRemovalStage().containsKey(filename)
+                    || workingFile.exists() && !Utils.sha1Contents(workingFile).equals(currentCommit.getBlobs().get(filename))
+                    && !Utils.sha1Contents(workingFile).equals(stashBlobs.get(filename))){
+                System.out.print("Your local changes would be overwritten; commit them or stash them first.");
+                System.exit(0);
+            }
+        }
+
+        SparseCheckout sparse = readSparseCheckout();
+        for(String filename : changed){
+            String targetSHA1 = stashBlobs.get(filename);
+            if(targetSHA1 == null){
+                if(Utils.join(CWD, filename).exists()){
+                    Utils.restrictedDelete(filename);
+                }
+            }
+            else if(sparse.includes(filename)){
+                checkoutFile(filename, targetSHA1);
+            }
+        }
+        entry.getStage().getAdditionStage().forEach((k, v) -> stage.stageToAddition(k, v));
+        for(String filename : entry.getStage().getRemovalStage().keySet()){
+            if(currentCommit.getBlobs().containsKey(filename)){
+                stage.stageToRemoval(filename, currentCommit.getBlobs().get(filename));
+            }
+        }
+        stage.save(stagingAreaFolder);
+        stash.remove(stash.size() - 1);
+        save(stashFolder, "Stash", stash);
+    }
+
+    /** Function for annotate command. Prints every line of the file with name filename in the current
+     * commit, preceded by the ID of the commit that last changed it. Walks first-parent history, skipping
+     * commits in which the file's blob is unchanged, and only diffs consecutive versions of the file.
+     * The annotation of each version is cached, so after a new commit only the newest version is diffed. */
+    public static void annotate(String filename){
+        HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        String commitID = readHead()[1];
+        if(!commitTree.get(commitID).getBlobs().containsKey(filename)){
+            System.out.println("File does not exist in that commit.");
+            System.exit(0);
+        }
+
+        List<String> versionCommits = new ArrayList<String>();
+        List<String> versionBlobs = new ArrayList<String>();
+        while(commitID != null){
+            String blob = commitTree.get(commitID).getBlobs().get(filename);
+            String parentID = commitTree.get(commitID).getParentSHA1();
+            while(parentID != null && blob.equals(commitTree.get(parentID).getBlobs().get(filename))){
+                commitID = parentID;
+                parentID = commitTree.get(commitID).getParentSHA1();
+            }
+            versionCommits.add(commitID);
+            versionBlobs.add(blob);
+            if(annotateCacheFile(commitID, filename).exists()
+                    || parentID == null || !commitTree.get(parentID).getBlobs().containsKey(filename)){
+                break;
+            }
+            commitID = parentID;
+        }
+
+        ArrayList<String> annotation = null;
+        List<String> lines = null;
+        for(int i = versionCommits.size() - 1; i >= 0; i--){
+            File cacheFile = annotateCacheFile(versionCommits.get(i), filename);
+            List<String> previousLines = lines;
+            lines = null;
+            if(cacheFile.exists()){
+                annotation = Utils.readObject(cacheFile, ArrayList.class);
+                continue;
+            }
+            lines = blobLines(versionBlobs.get(i));
+            ArrayList<String> newAnnotation = new ArrayList<String>();
+            if(annotation == null){
+                for(int j = 0; j < lines.size(); j++){
+                    newAnnotation.add(versionCommits.get(i));
+                }
+            }
+            else{
+                if(previousLines == null){
+                    previousLines = blobLines(versionBlobs.get(i + 1));
+                }
+                int[] matches = LineDiff.matchLines(previousLines, lines);
+                for(int j = 0; j < lines.size(); j++){
+                    newAnnotation.add(matches[j] >= 0 ? annotation.get(matches[j]) : versionCommits.get(i));
+                }
+            }
+            annotation = newAnnotation;
+            cacheFile.getParentFile().mkdirs();
+            Utils.writeObject(cacheFile, annotation);
+        }
+
+        if(lines == null){
+            lines = blobLines(versionBlobs.get(0));
+        }
+        for(int j = 0; j < lines.size(); j++){
+            System.out.println(annotation.get(j).substring(0, 8) + " " + lines.get(j));
+        }
+    }
+
+    /** Returns the file caching the line annotation of the version of the file with name filename that
+     * was introduced by the commit with ID commitID. The caches of a commit share a folder named after it,
+     * so gc can drop them together with the commit. */
+    private static File annotateCacheFile(String commitID, String filename){
+        return Utils.join(annotateCacheFolder, commitID, Utils.sha1(filename));
+    }
+
+    /** Deletes the annotate caches stored under name, either the folder of a commit or a file left by an
+     * older layout of the cache */
+    private static void deleteAnnotateCache(String name){
+        File cache = Utils.join(annotateCacheFolder, name);
+        if(cache.isDirectory()){
+            for(String file : Utils.plainFilenamesIn(cache)){
+                Utils.join(cache, file).delete();
+            }
+        }
+        cache.delete();
+    }
+
+    /** Returns the lines of the blob with the given sha1 */
+    private static List<String> blobLines(String sha1){
+        return Utils.readContentsAsString(Utils.join(blobsFolder, sha1)).lines().collect(Collectors.toList());
+    }
+
+    /** Function for archive command. Writes every file of the commit with id commitID, which may be
+     * abbreviated, to the archive outputName, either absolute or relative to the directory gitlet runs in.
+     * The format is chosen from the extension of outputName: .zip, .tar, or .tar.gz/.tgz. */
+    public static void archive(String commitID, String outputName){
+        HashMap<String, Commit> commitTree = Utils.readObject(Utils.join(commitFolder, "Commit Tree"), HashMap.class);
+        if(commitID.length() < 40) {
+            for (String id : commitTree.keySet()) {
+                if(id.startsWith(commitID)) {
+                    commitID = id;
+                }
+            }
+        }
+        if(!commitTree.containsKey(commitID)){
+            System.out.print("No commit with that id exists.");
+            System.exit(0);
+        }
+        File output = new File(outputName);
+        if(!Archive.isSupported(output)){
+            System.out.print("Archive name must end in .zip, .tar, .tar.gz or .tgz.");
+            System.exit(0);
+        }
+        Commit commit = commitTree.get(commitID);
+        try {
+            Archive.write(new TreeMap<String, String>(commit.getBlobs()), blobsFolder, commit.getTime(), output);
+        } catch (GitletException excp) {
+            System.out.print(excp.getMessage());
+            System.exit(0);
+        }
     }
-}
\ No newline at end of file
+}
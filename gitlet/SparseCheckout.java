@@ -0,0 +1,82 @@
+package gitlet;
+import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Represents the sparse-checkout pattern set of a repository.
+ *
+ *  This class stores the glob patterns that decide which tracked files are
+ *  materialized in the working directory. A pattern selects the files it
+ *  matches, while a pattern starting with "!" excludes them again. Patterns are
+ *  evaluated in order and the last one that matches a file decides whether it
+ *  is included. When no include pattern is given, every file is included unless
+ *  an exclude pattern matches it. Commits are unaffected by these patterns and
+ *  always carry the full tree of their parent forward.
+ */
+public class SparseCheckout implements Serializable {
+
+    /** The patterns of this sparse checkout in the order they were given. */
+    private ArrayList<String> patterns;
+
+    /** The compiled matchers for patterns. They are rebuilt after deserialization. */
+    private transient List<PathMatcher> matchers;
+
+    /** Creates a sparse checkout that includes every file. */
+    public SparseCheckout(){
+        this.patterns = new ArrayList<String>();
+    }
+
+    /** Creates a sparse checkout with the given include and "!"-prefixed exclude patterns. */
+    public SparseCheckout(List<String> patterns){
+        this.patterns = new ArrayList<String>(patterns);
+    }
+
+    /** Returns the patterns of this sparse checkout */
+    public List<String> getPatterns(){
+        return this.patterns;
+    }
+
+    /** Returns true if no pattern restricts the files that are checked out */
+    public boolean isEmpty(){
+        return this.patterns.isEmpty();
+    }
+
+    /** Returns true if the file with name fileName should be present in the working directory */
+    public boolean includes(String fileName){
+        if(patterns.isEmpty()){
+            return true;
+        }
+        if(matchers == null){
+            matchers = new ArrayList<PathMatcher>();
+            for(String pattern : patterns){
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + stripNegation(pattern)));
+            }
+        }
+        boolean included = !hasIncludePattern();
+        for(int i = 0; i < patterns.size(); i++){
+            if(matchers.get(i).matches(Paths.get(fileName))){
+                included = !patterns.get(i).startsWith("!");
+            }
+        }
+        return included;
+    }
+
+    /** Returns true if at least one of the patterns selects files rather than excluding them */
+    private boolean hasIncludePattern(){
+        for(String pattern : patterns){
+            if(!pattern.startsWith("!")){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the pattern without its leading "!", if it has one */
+    private static String stripNegation(String pattern){
+        return pattern.startsWith("!") ? pattern.substring(1) : pattern;
+    }
+
+}
@@ -1,9 +1,26 @@
 package gitlet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.io.File;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
 
 /** Represents a staging area object.
  *
@@ -13,64 +30,329 @@ import java.util.Set;
  *  methods that add and remove files from either stage exist to define
  *  the behavior of the staging area.
  *
+ *  Both stages are kept sorted by file name, and each has a reverse index
+ *  from blob sha1 to the file names staged with it, built the first time it
+ *  is needed, so looking up a file or a blob costs O(log n) once the staging
+ *  area is in memory. On disk the staging area is a snapshot plus a journal
+ *  of the changes made since the snapshot. Saving only appends the new
+ *  changes to the journal, and the snapshot is rewritten once the journal
+ *  grows larger than the staging area itself. Loading still reads the whole
+ *  snapshot and replays the journal, so only the write side of a command is
+ *  independent of the number of staged files.
+ *
+ *  Each snapshot carries a random id that is also written at the start of
+ *  its journal. A new snapshot is renamed into place atomically before the
+ *  old journal is deleted, so a journal left behind by an interrupted save
+ *  has the wrong id and is ignored instead of being replayed twice.
+ *
  *  @author Roberto Moron Jimenez
  */
 public class StagingArea implements Serializable {
 
+    /** Pinned to the implicit value of the first StagingArea class, whose stages were HashMaps */
+    private static final long serialVersionUID = -4791602246334698568L;
+
+    /** Name of the file holding the snapshot of the staging area */
+    private static final String SNAPSHOT = "Staging Area";
+
+    /** Name of the file holding the changes made since the snapshot */
+    private static final String JOURNAL = "Staging Journal";
+
+    /** Smallest number of journal records that makes saving rewrite the snapshot */
+    private static final int MIN_COMPACTION = 1024;
+
+    /** Journal record staging a file for addition, followed by the file name and sha1 */
+    private static final byte STAGE_ADDITION = 'A';
+
+    /** Journal record staging a file for removal, followed by the file name and sha1 */
+    private static final byte STAGE_REMOVAL = 'R';
+
+    /** Journal record unstaging a file from both stages, followed by the file name */
+    private static final byte UNSTAGE = 'U';
+
+    /** Journal record unstaging a file from the stage for removal, followed by the file name */
+    private static final byte UNSTAGE_REMOVAL = 'V';
+
+    /** Journal record clearing the staging area */
+    private static final byte ERASE = 'E';
+
     /** Stores files staged for addition */
-    private HashMap<String, String> addition;
+    private TreeMap<String, String> addition;
 
     /** Stores files staged for removal*/
-    private HashMap<String, String> removal;
+    private TreeMap<String, String> removal;
+
+    /** Identifies this snapshot, and the journal that extends it */
+    private long journalId;
+
+    /** Maps the sha1 of each blob staged for addition to the files staged with it */
+    private transient HashMap<String, TreeSet<String>> additionPaths;
+
+    /** Maps the sha1 of each blob staged for removal to the files staged with it */
+    private transient HashMap<String, TreeSet<String>> removalPaths;
 
-    /** A staging area constructor containing a HashMap for the addition stage and one for the removal stage.
-     * For each HashMap, key = fileName and value = sha1.*/
+    /** The journal records made since this staging area was loaded or saved */
+    private transient ArrayList<String[]> pending;
+
+    /** Number of records in the journal on disk */
+    private transient int journalLength;
+
+    /** True if this staging area does not extend the one on disk, or the journal on disk ends in a partial
+     * record or belongs to an older snapshot, so saving must rewrite the snapshot */
+    private transient boolean replaced;
+
+    /** A staging area constructor containing a TreeMap for the addition stage and one for the removal stage.
+     * For each TreeMap, key = fileName and value = sha1.*/
     public StagingArea(){
-        addition = new HashMap<String, String>();
-        removal = new HashMap<String, String>();
+        addition = new TreeMap<String, String>();
+        removal = new TreeMap<String, String>();
+        replaced = true;
+    }
+
+    /** Returns the staging area saved in folder, or an empty one if there is none */
+    public static StagingArea load(File folder){
+        File snapshot = Utils.join(folder, SNAPSHOT);
+        if(!snapshot.exists()){
+            return new StagingArea();
+        }
+        StagingArea stage = Utils.readObject(snapshot, StagingArea.class);
+        File journal = Utils.join(folder, JOURNAL);
+        if(journal.exists()){
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+                if(in.readLong() != stage.journalId){
+                    stage.replaced = true;
+                    return stage;
+                }
+                String[] record = readRecord(in);
+                while(record != null){
+                    stage.apply(record);
+                    stage.journalLength++;
+                    record = readRecord(in);
+                }
+            } catch (EOFException excp) {
+                stage.replaced = true;
+            } catch (IOException excp) {
+                throw Utils.error("Cannot read the staging journal: %s", excp.getMessage());
+            }
+        }
+        return stage;
+    }
+
+    /** Saves this staging area in folder, appending the changes made since it was loaded to the journal */
+    public void save(File folder){
+        File journal = Utils.join(folder, JOURNAL);
+        ArrayList<String[]> records = pending();
+        if(replaced || journalLength + records.size() > Math.max(MIN_COMPACTION, size())){
+            journalId = ThreadLocalRandom.current().nextLong();
+            File temporary = Utils.join(folder, SNAPSHOT + ".tmp");
+            Utils.writeObject(temporary, this);
+            try {
+                Files.move(temporary.toPath(), Utils.join(folder, SNAPSHOT).toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException excp) {
+                throw Utils.error("Cannot save the staging area: %s", excp.getMessage());
+            }
+            journal.delete();
+            journalLength = 0;
+            replaced = false;
+        }
+        else if(!records.isEmpty()){
+            boolean newJournal = !journal.exists();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)))) {
+                if(newJournal){
+                    out.writeLong(journalId);
+                }
+                for(String[] record : records){
+                    out.writeByte(record[0].charAt(0));
+                    for(int i = 1; i < record.length; i++){
+                        out.writeUTF(record[i]);
+                    }
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Cannot write the staging journal: %s", excp.getMessage());
+            }
+            journalLength += records.size();
+        }
+        records.clear();
     }
 
     /** Clears the staging area */
     public void erase() {
-        addition = new HashMap<String, String>();
-        removal = new HashMap<String, String>();
+        record(String.valueOf((char) ERASE));
     }
 
     /** Adds the file to the staging area for addition */
     public void stageToAddition(String fileName, String sha1){
-        addition.put(fileName, sha1);
+        record(String.valueOf((char) STAGE_ADDITION), fileName, sha1);
     }
 
     /** Adds the file to the staging area for removal */
     public void stageToRemoval(String fileName, String sha1){
-        removal.put(fileName, sha1);
+        record(String.valueOf((char) STAGE_REMOVAL), fileName, sha1);
     }
 
-    /** Returns the staging area HashMap for addition */
-    public HashMap<String, String> getAdditionStage(){
-        return this.addition;
+    /** Returns the staging area for addition, sorted by file name */
+    public SortedMap<String, String> getAdditionStage(){
+        return Collections.unmodifiableSortedMap(this.addition);
     }
 
-    /** Returns the staging area HashMap for removal */
-    public HashMap<String, String> getRemovalStage(){
-        return this.removal;
+    /** Returns the staging area for removal, sorted by file name */
+    public SortedMap<String, String> getRemovalStage(){
+        return Collections.unmodifiableSortedMap(this.removal);
     }
 
     /** Checks if the identified staging area (i.e. for addition or removal) contains the sha1 value passed in */
     public boolean stageContainsSHA1(String sha1, boolean isAddition){
-        if(isAddition){
-            return this.addition.containsValue(sha1);
-        }
-        return this.removal.containsValue(sha1);
+        return !stagedPaths(sha1, isAddition).isEmpty();
+    }
+
+    /** Returns the files in the identified staging area (i.e. for addition or removal) staged with the blob
+     * whose sha1 is passed in, sorted by file name */
+    public Set<String> stagedPaths(String sha1, boolean isAddition){
+        TreeSet<String> paths = (isAddition ? additionPaths() : removalPaths()).get(sha1);
+        return paths == null ? Collections.emptySet() : Collections.unmodifiableSet(paths);
     }
 
     /** Removes a file from the identified StagingArea */
     public void removeFromStage(String filename, boolean isAddition){
         if(isAddition){
-            this.addition.remove(filename);
+            record(String.valueOf((char) UNSTAGE), filename);
+        }
+        else{
+            record(String.valueOf((char) UNSTAGE_REMOVAL), filename);
         }
-        this.removal.remove(filename);
     }
 
-}
+    /** Returns the number of files in both stages */
+    public int size(){
+        return this.addition.size() + this.removal.size();
+    }
+
+    /** Reads a staging area, copying the HashMaps stored by older versions into sorted maps */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.addition = new TreeMap<String, String>((Map<String, String>) fields.get("addition", null));
+        this.removal = new TreeMap<String, String>((Map<String, String>) fields.get("removal", null));
+        this.journalId = fields.get("journalId", 0L);
+    }
+
+    /** Applies record to this staging area and queues it to be appended to the journal */
+    private void record(String... record){
+        apply(record);
+        pending().add(record);
+    }
+
+    /** Applies the change described by the journal record record to this staging area */
+    private void apply(String[] record){
+        switch(record[0].charAt(0)){
+            case STAGE_ADDITION:
+                put(addition, additionPaths, record[1], record[2]);
+                break;
+            case STAGE_REMOVAL:
+                put(removal, removalPaths, record[1], record[2]);
+                break;
+            case UNSTAGE:
+                remove(addition, additionPaths, record[1]);
+                remove(removal, removalPaths, record[1]);
+                break;
+            case UNSTAGE_REMOVAL:
+                remove(removal, removalPaths, record[1]);
+                break;
+            case ERASE:
+                addition = new TreeMap<String, String>();
+                removal = new TreeMap<String, String>();
+                additionPaths = null;
+                removalPaths = null;
+                break;
+            default:
+                throw Utils.error("Unknown staging journal record: %s", record[0]);
+        }
+    }
+
+    /** Stages fileName with the blob sha1 in stage, keeping the reverse index paths up to date if it
+     * has been built */
+    private static void put(TreeMap<String, String> stage, HashMap<String, TreeSet<String>> paths,
+                            String fileName, String sha1){
+        remove(stage, paths, fileName);
+        stage.put(fileName, sha1);
+        if(paths != null){
+            paths.computeIfAbsent(sha1, k -> new TreeSet<String>()).add(fileName);
+        }
+    }
+
+    /** Unstages fileName from stage, keeping the reverse index paths up to date if it has been built */
+    private static void remove(TreeMap<String, String> stage, HashMap<String, TreeSet<String>> paths,
+                               String fileName){
+        String sha1 = stage.remove(fileName);
+        if(sha1 != null && paths != null){
+            TreeSet<String> files = paths.get(sha1);
+            files.remove(fileName);
+            if(files.isEmpty()){
+                paths.remove(sha1);
+            }
+        }
+    }
+
+    /** Returns the next journal record of in, or null at the end of the journal. Throws an EOFException if
+     * the record was cut short by an interrupted save. */
+    private static String[] readRecord(DataInputStream in) throws IOException {
+        int type = in.read();
+        if(type == -1){
+            return null;
+        }
+        int fields;
+        switch(type){
+            case STAGE_ADDITION:
+            case STAGE_REMOVAL:
+                fields = 2;
+                break;
+            case UNSTAGE:
+            case UNSTAGE_REMOVAL:
+                fields = 1;
+                break;
+            case ERASE:
+                fields = 0;
+                break;
+            default:
+                throw new IOException("unknown record type " + type);
+        }
+        String[] record = new String[fields + 1];
+        record[0] = String.valueOf((char) type);
+        for(int i = 1; i <= fields; i++){
+            record[i] = in.readUTF();
+        }
+        return record;
+    }
+
+    /** Returns the reverse index of the stage for addition, building it after deserialization */
+    private HashMap<String, TreeSet<String>> additionPaths(){
+        if(additionPaths == null){
+            additionPaths = reverseIndex(addition);
+        }
+        return additionPaths;
+    }
+
+    /** Returns the reverse index of the stage for removal, building it after deserialization */
+    private HashMap<String, TreeSet<String>> removalPaths(){
+        if(removalPaths == null){
+            removalPaths = reverseIndex(removal);
+        }
+        return removalPaths;
+    }
+
+    /** Returns the journal records not saved yet, creating the list after deserialization */
+    private ArrayList<String[]> pending(){
+        if(pending == null){
+            pending = new ArrayList<String[]>();
+        }
+        return pending;
+    }
+
+    /** Returns a map from each sha1 of stage to the file names staged with it */
+    private static HashMap<String, TreeSet<String>> reverseIndex(Map<String, String> stage){
+        HashMap<String, TreeSet<String>> paths = new HashMap<String, TreeSet<String>>();
+        stage.forEach((fileName, sha1) -> paths.computeIfAbsent(sha1, k -> new TreeSet<String>()).add(fileName));
+        return paths;
+    }
 
+}
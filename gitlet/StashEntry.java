@@ -0,0 +1,47 @@
+package gitlet;
+import java.io.Serializable;
+
+/** Represents one entry of the stash.
+ *
+ *  This class pairs a stash commit with the staging area that was current when
+ *  the entry was made. The stash commit's parent is the commit that was checked
+ *  out at the time and its blobs are the tracked and staged files as they were
+ *  in the working directory, so the entry only adds blobs for the files that
+ *  were actually modified. Stash commits are kept out of the commit tree, so
+ *  they never show up in log, global-log or find.
+ */
+public class StashEntry implements Serializable {
+
+    /** The commit holding the working directory state of this entry */
+    private Commit commit;
+
+    /** The staging area as it was when this entry was made */
+    private StagingArea stage;
+
+    /** The name of the branch that was checked out when this entry was made */
+    private String branchName;
+
+    /** Creates a stash entry for the working directory state in commit and the staging area stage,
+     * made while the branch with name branchName was checked out. */
+    public StashEntry(Commit commit, StagingArea stage, String branchName){
+        this.commit = commit;
+        this.stage = stage;
+        this.branchName = branchName;
+    }
+
+    /** Returns the commit holding the working directory state of this entry */
+    public Commit getCommit(){
+        return this.commit;
+    }
+
+    /** Returns the staging area of this entry */
+    public StagingArea getStage(){
+        return this.stage;
+    }
+
+    /** Returns the name of the branch this entry was made on */
+    public String getBranchName(){
+        return this.branchName;
+    }
+
+}
@@ -0,0 +1,155 @@
+package gitlet;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.List;
+import java.util.TreeSet;
+
+/** Represents the index of commits ordered by the time they were made.
+ *
+ *  The index is a file of fixed-size records, one per commit, each holding
+ *  the commit time in milliseconds since the Unix Epoch followed by the
+ *  commit's sha1, sorted by time and then by sha1. Because every record has
+ *  the same size, the first commit of a time range is found by binary search
+ *  over the records, and the range is then read sequentially from there.
+ */
+public class TimeIndex {
+
+    /** Size in bytes of one record: an 8-byte time followed by a sha1 */
+    private static final int RECORD_SIZE = 8 + Utils.UID_LENGTH;
+
+    /** The file holding the records */
+    private File indexFile;
+
+    /** Creates a time index backed by indexFile */
+    public TimeIndex(File indexFile){
+        this.indexFile = indexFile;
+    }
+
+    /** Returns the number of commits in the index */
+    public long size(){
+        return indexFile.length() / RECORD_SIZE;
+    }
+
+    /** Adds the commit with the given sha1 made at time to the index. Commits newer than every indexed
+     * commit are appended; any other commit causes the index to be rewritten in order. */
+    public void add(String sha1, long time){
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            long records = file.length() / RECORD_SIZE;
+            if(records > 0){
+                file.seek((records - 1) * RECORD_SIZE);
+                if(file.readLong() > time){
+                    TreeSet<Record> all = new TreeSet<Record>(readRange(Long.MIN_VALUE, Long.MAX_VALUE));
+                    all.add(new Record(time, sha1));
+                    write(all);
+                    return;
+                }
+            }
+            file.seek(records * RECORD_SIZE);
+            file.writeLong(time);
+            file.write(sha1.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException excp) {
+            throw Utils.error("Cannot update time index: %s", excp.getMessage());
+        }
+    }
+
+    /** Replaces the contents of the index with the commits of commitTree */
+    public void rebuild(Map<String, Commit> commitTree){
+        TreeSet<Record> all = new TreeSet<Record>();
+        commitTree.forEach((sha1, commit) -> all.add(new Record(commit.getTime(), sha1)));
+        write(all);
+    }
+
+    /** Returns the sha1s of the commits made between since and until, both inclusive, newest first */
+    public List<String> range(long since, long until){
+        List<String> result = new ArrayList<String>();
+        List<Record> records = readRange(since, until);
+        for(int i = records.size() - 1; i >= 0; i--){
+            result.add(records.get(i).sha1);
+        }
+        return result;
+    }
+
+    /** Returns the records with times between since and until, both inclusive, oldest first */
+    private List<Record> readRange(long since, long until){
+        List<Record> result = new ArrayList<Record>();
+        if(!indexFile.exists()){
+            return result;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {
+            long lo = 0;
+            long hi = file.length() / RECORD_SIZE;
+            while(lo < hi){
+                long mid = (lo + hi) / 2;
+                file.seek(mid * RECORD_SIZE);
+                if(file.readLong() < since){
+                    lo = mid + 1;
+                }
+                else{
+                    hi = mid;
+                }
+            }
+            file.seek(lo * RECORD_SIZE);
+            byte[] sha1 = new byte[Utils.UID_LENGTH];
+            while(file.getFilePointer() + RECORD_SIZE <= file.length()){
+                long time = file.readLong();
+                if(time > until){
+                    break;
+                }
+                file.readFully(sha1);
+                result.add(new Record(time, new String(sha1, StandardCharsets.US_ASCII)));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read time index: %s", excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Writes records to a new index file that replaces the old one in a single step */
+    private void write(TreeSet<Record> records){
+        File temporary = new File(indexFile.getPath() + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(temporary, "rw")) {
+            file.setLength(0);
+            for(Record record : records){
+                file.writeLong(record.time);
+                file.write(record.sha1.getBytes(StandardCharsets.US_ASCII));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write time index: %s", excp.getMessage());
+        }
+        try {
+            Files.move(temporary.toPath(), indexFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write time index: %s", excp.getMessage());
+        }
+    }
+
+    /** One commit of the index, ordered by time and then by sha1 */
+    private static class Record implements Comparable<Record> {
+
+        /** The time the commit was made */
+        private long time;
+
+        /** The sha1 of the commit */
+        private String sha1;
+
+        /** Creates the record of the commit with the given sha1 made at time */
+        Record(long time, String sha1){
+            this.time = time;
+            this.sha1 = sha1;
+        }
+
+        @Override
+        public int compareTo(Record other){
+            int cmp = Long.compare(time, other.time);
+            return cmp != 0 ? cmp : sha1.compareTo(other.sha1);
+        }
+    }
+
+}
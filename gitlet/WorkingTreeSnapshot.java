@@ -0,0 +1,59 @@
+package gitlet;
+import java.io.Serializable;
+import java.util.TreeMap;
+
+/** Represents the contents of the working directory as last seen by status.
+ *
+ *  This class stores the sha1 of every plain file in the working directory,
+ *  sorted by file name, along with the watcher generation it is up to date
+ *  with. Together with a DirtySet it lets status re-hash only the files that
+ *  changed since the previous run instead of every file in the directory.
+ */
+public class WorkingTreeSnapshot implements Serializable {
+
+    /** Maps the name of every working file to the sha1 of its contents */
+    private TreeMap<String, String> files;
+
+    /** Identifies the watcher this snapshot is synchronized with, or null if there is none */
+    private String watcherId;
+
+    /** The watcher generation this snapshot is up to date with */
+    private long generation;
+
+    /** Creates an empty snapshot that is not synchronized with any watcher */
+    public WorkingTreeSnapshot(){
+        this.files = new TreeMap<String, String>();
+    }
+
+    /** Records that the working file with name fileName has contents with the given sha1 */
+    public void update(String fileName, String sha1){
+        files.put(fileName, sha1);
+    }
+
+    /** Records that the working file with name fileName no longer exists */
+    public void remove(String fileName){
+        files.remove(fileName);
+    }
+
+    /** Records that this snapshot is up to date with generation gen of the watcher identified by watcherId */
+    public void synchronize(String watcherId, long gen){
+        this.watcherId = watcherId;
+        this.generation = gen;
+    }
+
+    /** Returns the working files mapped to the sha1s of their contents, sorted by name */
+    public TreeMap<String, String> getFiles(){
+        return this.files;
+    }
+
+    /** Returns the identifier of the watcher this snapshot is synchronized with */
+    public String getWatcherId(){
+        return this.watcherId;
+    }
+
+    /** Returns the watcher generation this snapshot is up to date with */
+    public long getGeneration(){
+        return this.generation;
+    }
+
+}
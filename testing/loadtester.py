@@ -0,0 +1,263 @@
+import sys, re, json, random, time
+from subprocess import run, PIPE, STDOUT, DEVNULL
+from os.path import abspath, dirname, exists, join
+from getopt import getopt, GetoptError
+from os import environ, getcwd, access, W_OK
+from shutil import rmtree
+from tempfile import mkdtemp
+from multiprocessing import Process, Queue
+
+SHORT_USAGE = """\
+Usage: python3 loadtester.py OPTIONS
+
+   OPTIONS may include
+       --procs=N      Number of concurrent worker processes (default 8).
+       --repos=N      Number of synthetic repositories the workers share
+                      (default 1).  Worker K uses repository K mod N.
+       --ops=N        Number of gitlet commands run by each worker
+                      (default 50).
+       --files=N      Number of files committed to each repository before
+                      the run starts (default 20).
+       --mix=SPEC     Relative weights of the commands to run, as a comma-
+                      separated list of COMMAND:WEIGHT with COMMAND one of
+                      add, commit, checkout, log and status (default
+                      add:4,commit:2,checkout:1,log:2,status:2).
+       --seed=N       Seed for the random choice of commands.
+       --progdir=DIR  Directory or JAR files containing gitlet application
+       --report=FILE  Also write the report as JSON to FILE.
+       --keep         Keep the synthetic repositories
+"""
+
+USAGE = SHORT_USAGE + """\
+
+Creates the synthetic repositories, then starts the worker processes at the
+same time.  Each worker repeatedly picks a command at random according to the
+weights of --mix and runs it against its repository:
+
+   add       Writes new contents, unique to the worker, to one of a few files
+             owned by the worker and adds it.
+   commit    Commits with a message unique to the worker and command.
+   checkout  Checks out one of the initial files from the head commit.
+   log       Runs log.
+   status    Runs status.
+
+The wall-clock latency of every command is recorded.  Once all workers are
+done, each repository is checked with fsck, and every commit that a worker saw
+succeed is looked for in the log of the repository's current branch.
+
+The report gives, for each command, the number of runs, the number that failed
+(a non-zero exit or a Java exception in the output) and the p50, p99 and p999
+latencies in milliseconds, followed by the total throughput in commands per
+second, the number of problems fsck found (corruption) and the number of
+successful commits missing from the log (lost updates).
+"""
+
+COMMANDS = ("add", "commit", "checkout", "log", "status")
+
+JAVA_COMMAND = "java"
+GITLET_CLASS = "gitlet.Main"
+
+def Usage():
+    print(SHORT_USAGE, file=sys.stderr)
+    sys.exit(1)
+
+def gitlet(repo, *args):
+    """Run gitlet.Main with ARGS in directory REPO.  Returns the exit code and
+    output of the command."""
+    result = run([JAVA_COMMAND, GITLET_CLASS] + list(args), cwd=repo,
+                 stdin=DEVNULL, stdout=PIPE, stderr=STDOUT,
+                 universal_newlines=True)
+    return result.returncode, result.stdout
+
+def failed(code, out):
+    return code != 0 or re.search(r'Exception|\tat ', out) is not None
+
+def createRepo(base, num_files):
+    repo = mkdtemp(prefix="gitlet_load_", dir=base)
+    gitlet(repo, "init")
+    for n in range(num_files):
+        with open(join(repo, "f{}.txt".format(n)), "w") as out:
+            out.write("initial contents of file {}\n".format(n))
+        gitlet(repo, "add", "f{}.txt".format(n))
+    gitlet(repo, "commit", "load test setup")
+    return repo
+
+def worker(worker_id, repo, num_ops, num_files, mix, seed, results):
+    rand = random.Random(seed * 1000003 + worker_id)
+    commands = [c for c, w in mix for _ in range(w)]
+    samples = []
+    committed = []
+    for n in range(num_ops):
+        command = rand.choice(commands)
+        if command == "add":
+            name = "w{}_{}.txt".format(worker_id, rand.randrange(4))
+            with open(join(repo, name), "w") as out:
+                out.write("worker {} operation {}\n".format(worker_id, n))
+            args = ("add", name)
+        elif command == "commit":
+            args = ("commit", "worker {} commit {}".format(worker_id, n))
+        elif command == "checkout":
+            args = ("checkout", "--",
+                    "f{}.txt".format(rand.randrange(max(num_files, 1))))
+        else:
+            args = (command,)
+        start = time.perf_counter()
+        code, out = gitlet(repo, *args)
+        elapsed = time.perf_counter() - start
+        error = failed(code, out)
+        samples.append((command, elapsed, error))
+        if command == "commit" and not error and out.strip() == "":
+            committed.append(args[1])
+    results.put((worker_id, samples, committed))
+
+def percentile(sorted_values, p):
+    """The nearest-rank P-th percentile of SORTED_VALUES."""
+    if not sorted_values:
+        return 0.0
+    rank = max(1, int(-(-p * len(sorted_values) // 100)))
+    return sorted_values[min(rank, len(sorted_values)) - 1]
+
+def checkRepo(repo, committed):
+    """Returns the number of fsck problems of REPO and the number of messages
+    in COMMITTED that are missing from the log of its current branch."""
+    code, out = gitlet(repo, "fsck")
+    corruption = len([line for line in out.splitlines()
+                      if not line.startswith("dangling")])
+    if failed(code, out):
+        corruption += 1
+    code, out = gitlet(repo, "log")
+    logged = set(out.splitlines())
+    lost = len([msg for msg in committed if msg not in logged])
+    return corruption, lost
+
+def makeReport(samples, wall_time, corruption, lost):
+    report = { "commands": {}, "wall_time_sec": wall_time,
+               "corruption": corruption, "lost_updates": lost }
+    for command in COMMANDS:
+        times = sorted(t * 1000 for c, t, e in samples if c == command)
+        if not times:
+            continue
+        report["commands"][command] = {
+            "count": len(times),
+            "errors": len([1 for c, t, e in samples if c == command and e]),
+            "p50_ms": percentile(times, 50),
+            "p99_ms": percentile(times, 99),
+            "p999_ms": percentile(times, 99.9),
+        }
+    report["throughput_ops_per_sec"] = \
+        len(samples) / wall_time if wall_time > 0 else 0.0
+    return report
+
+def printReport(report):
+    print("{:<10} {:>7} {:>7} {:>10} {:>10} {:>10}"
+          .format("command", "count", "errors", "p50 ms", "p99 ms", "p999 ms"))
+    for command, stats in report["commands"].items():
+        print("{:<10} {:>7} {:>7} {:>10.1f} {:>10.1f} {:>10.1f}"
+              .format(command, stats["count"], stats["errors"],
+                      stats["p50_ms"], stats["p99_ms"], stats["p999_ms"]))
+    print()
+    print("Throughput: {:.1f} commands/sec over {:.1f} sec"
+          .format(report["throughput_ops_per_sec"], report["wall_time_sec"]))
+    print("Corruption (fsck problems): {}".format(report["corruption"]))
+    print("Lost updates: {}".format(report["lost_updates"]))
+
+if __name__ == "__main__":
+    procs, num_repos, num_ops, num_files = 8, 1, 50, 20
+    mix = [("add", 4), ("commit", 2), ("checkout", 1), ("log", 2),
+           ("status", 2)]
+    seed = 0
+    prog_dir = None
+    report_file = None
+    keep = False
+
+    try:
+        opts, args = \
+            getopt(sys.argv[1:], '',
+                   ['procs=', 'repos=', 'ops=', 'files=', 'mix=', 'seed=',
+                    'progdir=', 'report=', 'keep', 'help'])
+        for opt, val in opts:
+            if opt == '--procs':
+                procs = int(val)
+            elif opt == '--repos':
+                num_repos = int(val)
+            elif opt == '--ops':
+                num_ops = int(val)
+            elif opt == '--files':
+                num_files = int(val)
+            elif opt == '--mix':
+                mix = []
+                for item in val.split(","):
+                    command, weight = item.split(":")
+                    if command not in COMMANDS:
+                        Usage()
+                    mix.append((command, int(weight)))
+            elif opt == '--seed':
+                seed = int(val)
+            elif opt == '--progdir':
+                prog_dir = abspath(val)
+            elif opt == '--report':
+                report_file = val
+            elif opt == '--keep':
+                keep = True
+            elif opt == '--help':
+                print(USAGE)
+                sys.exit(0)
+        if args or procs < 1 or num_repos < 1 \
+           or sum(w for c, w in mix) < 1:
+            Usage()
+        if prog_dir is None:
+            prog_dir = abspath(getcwd())
+            k = 10
+            while k > 0 and access(prog_dir, W_OK):
+                k -= 1
+                if exists(join(prog_dir, 'gitlet', 'Main.class')):
+                    break
+                prog_dir = dirname(prog_dir)
+            else:
+                print("Could not find gitlet.Main.", file=sys.stderr)
+                sys.exit(1)
+    except (GetoptError, ValueError):
+        Usage()
+
+    if 'CLASSPATH' in environ:
+        environ['CLASSPATH'] = "{}:{}".format(prog_dir, environ['CLASSPATH'])
+    else:
+        environ['CLASSPATH'] = prog_dir
+
+    base = mkdtemp(prefix="gitlet_load_")
+    try:
+        repos = [createRepo(base, num_files) for _ in range(num_repos)]
+        results = Queue()
+        workers = [Process(target=worker,
+                           args=(k, repos[k % num_repos], num_ops, num_files,
+                                 mix, seed, results))
+                   for k in range(procs)]
+        start = time.perf_counter()
+        for w in workers:
+            w.start()
+        outcomes = [results.get() for _ in workers]
+        wall_time = time.perf_counter() - start
+        for w in workers:
+            w.join()
+
+        samples = []
+        committed = [[] for _ in repos]
+        for worker_id, worker_samples, worker_committed in outcomes:
+            samples += worker_samples
+            committed[worker_id % num_repos] += worker_committed
+        corruption = lost = 0
+        for repo, messages in zip(repos, committed):
+            repo_corruption, repo_lost = checkRepo(repo, messages)
+            corruption += repo_corruption
+            lost += repo_lost
+
+        report = makeReport(samples, wall_time, corruption, lost)
+        printReport(report)
+        if report_file is not None:
+            with open(report_file, "w") as out:
+                json.dump(report, out, indent=2)
+    finally:
+        if keep:
+            print("Repositories kept in {}".format(base))
+        else:
+            rmtree(base, ignore_errors=True)